@@ -18,18 +18,14 @@
 -keep class com.reymelin.gradientclock.MainActivity { *; }
 -keep class com.reymelin.gradientclock.GradientClockWidget { *; }
 -keep class com.reymelin.gradientclock.GradientClockWallpaperService { *; }
--keep class com.reymelin.gradientclock.GradientClockWatchFaceService { *; }
 -keep class com.reymelin.gradientclock.WidgetConfigActivity { *; }
 -keep class com.reymelin.gradientclock.WallpaperSettingsActivity { *; }
+-keep class com.reymelin.gradientclock.ClockBridgePlugin { *; }
 
 # Keep WebView related classes
 -keep class android.webkit.** { *; }
 -keepclassmembers class android.webkit.** { *; }
 
-# Keep Wear OS classes
--keep class androidx.wear.** { *; }
--keepclassmembers class androidx.wear.** { *; }
-
 # Preserve line numbers for debugging
 -keepattributes SourceFile,LineNumberTable
 -renamesourcefileattribute SourceFile
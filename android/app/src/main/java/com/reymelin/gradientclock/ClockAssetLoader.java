@@ -0,0 +1,231 @@
+package com.reymelin.gradientclock;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
+import androidx.webkit.WebViewAssetLoader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-memory asset server for embedded WebViews
+ * Reads the bundled web assets once per process and serves them through
+ * WebViewAssetLoader, so WebViews never need file:// access
+ */
+final class ClockAssetLoader {
+
+    private static final String TAG = "ClockAssetLoader";
+
+    static final String ASSET_ROOT = "public";
+    static final String INDEX_URL =
+        "https://" + WebViewAssetLoader.DEFAULT_DOMAIN + "/" + ASSET_ROOT + "/index.html";
+
+    // Assets larger than this are streamed from the APK instead of being held in memory
+    private static final int MAX_CACHED_BYTES = 256 * 1024;
+
+    private static final Map<String, byte[]> cache = new ConcurrentHashMap<>();
+    private static final ExecutorService prewarmExecutor = Executors.newSingleThreadExecutor();
+    private static WebViewAssetLoader assetLoader;
+
+    /**
+     * The asset cache as seen by ClockMemoryManager; registered by the entry points that load web assets
+     */
+    static final ClockMemoryManager.TrimmableCache TRIMMABLE = new ClockMemoryManager.TrimmableCache() {
+        @Override
+        public String getName() {
+            return "web_assets";
+        }
+
+        @Override
+        public long getResidentBytes() {
+            return residentBytes();
+        }
+
+        @Override
+        public void trim(float keepFraction) {
+            if (keepFraction <= 0f) {
+                clear();
+            }
+        }
+    };
+
+    private ClockAssetLoader() {
+    }
+
+    /**
+     * Shared loader for every WebView in the process
+     */
+    static synchronized WebViewAssetLoader get(Context context) {
+        if (assetLoader == null) {
+            final AssetManager assets = context.getApplicationContext().getAssets();
+            assetLoader = new WebViewAssetLoader.Builder()
+                .addPathHandler("/" + ASSET_ROOT + "/", new WebViewAssetLoader.PathHandler() {
+                    @Override
+                    public WebResourceResponse handle(String path) {
+                        return serve(assets, ASSET_ROOT + "/" + path);
+                    }
+                })
+                .build();
+        }
+        return assetLoader;
+    }
+
+    /**
+     * WebViewClient that routes asset requests through the shared loader
+     */
+    static WebViewClient createWebViewClient(Context context) {
+        return createWebViewClient(context, null);
+    }
+
+    /**
+     * WebViewClient that routes asset requests through the shared loader
+     * and reports when the page has finished loading
+     */
+    static WebViewClient createWebViewClient(Context context, final Runnable onPageFinished) {
+        final WebViewAssetLoader loader = get(context);
+        return new WebViewClient() {
+            @Override
+            public void onPageFinished(WebView view, String url) {
+                if (onPageFinished != null) {
+                    onPageFinished.run();
+                }
+            }
+
+            @Override
+            public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+                return loader.shouldInterceptRequest(request.getUrl());
+            }
+
+            @Override
+            public boolean shouldOverrideUrlLoading(WebView view, WebResourceRequest request) {
+                Uri url = request.getUrl();
+                return !WebViewAssetLoader.DEFAULT_DOMAIN.equals(url.getHost());
+            }
+        };
+    }
+
+    /**
+     * Read the asset set into memory off the main thread
+     */
+    static void prewarm(Context context) {
+        final AssetManager assets = context.getApplicationContext().getAssets();
+        prewarmExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                prewarmDirectory(assets, ASSET_ROOT);
+            }
+        });
+    }
+
+    /**
+     * Bytes currently held by the cache
+     */
+    static long residentBytes() {
+        long total = 0;
+        for (byte[] data : cache.values()) {
+            total += data.length;
+        }
+        return total;
+    }
+
+    static void clear() {
+        cache.clear();
+    }
+
+    private static void prewarmDirectory(AssetManager assets, String dir) {
+        try {
+            String[] children = assets.list(dir);
+            if (children == null) {
+                return;
+            }
+            for (String child : children) {
+                String path = dir + "/" + child;
+                String[] grandChildren = assets.list(path);
+                if (grandChildren != null && grandChildren.length > 0) {
+                    prewarmDirectory(assets, path);
+                } else {
+                    load(assets, path);
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to prewarm " + dir, e);
+        }
+    }
+
+    private static WebResourceResponse serve(AssetManager assets, String path) {
+        try {
+            byte[] data = load(assets, path);
+            InputStream stream = data != null ? new ByteArrayInputStream(data) : assets.open(path);
+            String mimeType = mimeType(path);
+            String encoding = mimeType.startsWith("text/") ? "UTF-8" : null;
+            return new WebResourceResponse(
+                mimeType, encoding, 200, "OK", headers(path), stream
+            );
+        } catch (IOException e) {
+            return new WebResourceResponse(null, null, 404, "Not Found", null, null);
+        }
+    }
+
+    private static byte[] load(AssetManager assets, String path) throws IOException {
+        byte[] cached = cache.get(path);
+        if (cached != null) {
+            return cached;
+        }
+
+        InputStream in = assets.open(path);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                if (out.size() > MAX_CACHED_BYTES) {
+                    return null;
+                }
+            }
+            byte[] data = out.toByteArray();
+            cache.put(path, data);
+            return data;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static Map<String, String> headers(String path) {
+        Map<String, String> headers = new HashMap<>();
+        // Pages are revalidated so an app update is picked up; static assets are cached for a day
+        if (path.endsWith(".html")) {
+            headers.put("Cache-Control", "no-cache");
+        } else {
+            headers.put("Cache-Control", "public, max-age=86400");
+        }
+        headers.put("Access-Control-Allow-Origin", "https://" + WebViewAssetLoader.DEFAULT_DOMAIN);
+        return headers;
+    }
+
+    private static String mimeType(String path) {
+        String lower = path.toLowerCase();
+        if (lower.endsWith(".html") || lower.endsWith(".htm")) return "text/html";
+        if (lower.endsWith(".js") || lower.endsWith(".mjs")) return "text/javascript";
+        if (lower.endsWith(".css")) return "text/css";
+        if (lower.endsWith(".json")) return "application/json";
+        if (lower.endsWith(".svg")) return "image/svg+xml";
+        if (lower.endsWith(".png")) return "image/png";
+        if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) return "image/jpeg";
+        if (lower.endsWith(".webp")) return "image/webp";
+        if (lower.endsWith(".woff2")) return "font/woff2";
+        return "application/octet-stream";
+    }
+}
@@ -0,0 +1,268 @@
+package com.reymelin.gradientclock;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import androidx.core.content.ContextCompat;
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+import java.util.List;
+import java.util.TimeZone;
+import org.json.JSONException;
+
+/**
+ * Capacitor plugin that drives the web clock from native events
+ * Pushes second/minute ticks while the page asks for them, visibility and
+ * screen state, power tier and time zone changes so the page can suspend or
+ * slow its animation loop
+ */
+@CapacitorPlugin(name = "ClockBridge")
+public class ClockBridgePlugin extends Plugin {
+
+    static final String EVENT_TICK = "tick";
+    static final String EVENT_VISIBILITY = "visibility";
+    static final String EVENT_POWER_TIER = "powerTier";
+    static final String EVENT_TIME_ZONE = "timeZone";
+
+    /**
+     * Native side of the bridge, for hosts that render the rings themselves
+     */
+    interface Listener {
+        void onClockStateChanged(String theme, String timeFormat, String texture);
+
+        void onPowerTierChanged(PowerTier tier);
+
+        void onZonesChanged(String[] zoneIds);
+
+        void onTimeZoneChanged();
+    }
+
+    private final Handler tickHandler = new Handler(Looper.getMainLooper());
+    private boolean visible = true;
+    private boolean screenOn = true;
+    private PowerTier powerTier = PowerTier.FULL;
+    private boolean nightstand = false;
+    // Whether the page repaints on ticks; it ignores them while smooth or paused
+    private boolean ticking = false;
+    private int lastMinute = -1;
+    private Listener listener;
+
+    private final Runnable tickRunnable = new Runnable() {
+        @Override
+        public void run() {
+            long now = System.currentTimeMillis();
+            int minute = (int) ((now / 60000L) % 60);
+            JSObject data = new JSObject();
+            data.put("time", now);
+            data.put("minute", minute != lastMinute);
+            lastMinute = minute;
+            notifyListeners(EVENT_TICK, data);
+
+            // Align to the next second boundary
+            tickHandler.postDelayed(this, 1000 - (System.currentTimeMillis() % 1000));
+        }
+    };
+
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            String action = intent.getAction();
+            if (Intent.ACTION_SCREEN_ON.equals(action) || Intent.ACTION_SCREEN_OFF.equals(action)) {
+                screenOn = Intent.ACTION_SCREEN_ON.equals(action);
+                publishVisibility();
+            } else if (Intent.ACTION_TIMEZONE_CHANGED.equals(action) || Intent.ACTION_TIME_CHANGED.equals(action)) {
+                publishTimeZone();
+            } else {
+                PowerTier tier = PowerTier.current(getContext());
+                if (tier != powerTier) {
+                    powerTier = tier;
+                    publishPowerTier();
+                }
+            }
+        }
+    };
+
+    @Override
+    public void load() {
+        Context context = getContext();
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        screenOn = powerManager == null || powerManager.isInteractive();
+        powerTier = PowerTier.current(context);
+
+        IntentFilter filter = PowerTier.changeFilter();
+        filter.addAction(Intent.ACTION_SCREEN_ON);
+        filter.addAction(Intent.ACTION_SCREEN_OFF);
+        filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+        filter.addAction(Intent.ACTION_TIME_CHANGED);
+        ContextCompat.registerReceiver(context, receiver, filter, ContextCompat.RECEIVER_NOT_EXPORTED);
+
+        updateTicking();
+    }
+
+    /**
+     * Current native state, for the page to sync with on startup
+     */
+    @PluginMethod
+    public void getState(PluginCall call) {
+        JSObject state = new JSObject();
+        state.put("visible", visible && screenOn);
+        state.put("screenOn", screenOn);
+        state.put("powerTier", effectivePowerTier().id);
+        state.put("nightstand", nightstand);
+        state.put("nativeRings", listener != null);
+        state.put("timeZone", TimeZone.getDefault().getID());
+        state.put("offsetMinutes", TimeZone.getDefault().getOffset(System.currentTimeMillis()) / 60000);
+        call.resolve(state);
+    }
+
+    /**
+     * Control state from the page: theme, time format and texture
+     */
+    @PluginMethod
+    public void setClockState(PluginCall call) {
+        if (listener != null) {
+            listener.onClockStateChanged(
+                call.getString("theme", ClockTheme.DEFAULT),
+                call.getString("timeFormat", ClockFacePainter.FORMAT_NONE),
+                call.getString("texture", ClockFacePainter.TEXTURE_NONE)
+            );
+        }
+        call.resolve();
+    }
+
+    /**
+     * Extra time zones for the native rings, as an array of zone IDs
+     */
+    @PluginMethod
+    public void setZones(PluginCall call) {
+        JSArray zones = call.getArray("zones", new JSArray());
+        String[] zoneIds;
+        try {
+            List<String> list = zones.toList();
+            zoneIds = ZoneOffsets.known(list.toArray(new String[0]));
+        } catch (JSONException e) {
+            call.reject("zones must be an array of time zone IDs");
+            return;
+        }
+        if (listener != null) {
+            listener.onZonesChanged(zoneIds);
+        }
+        call.resolve();
+    }
+
+    /**
+     * Whether the page wants second ticks, which it only uses in its tick-driven loop mode
+     */
+    @PluginMethod
+    public void setTicking(PluginCall call) {
+        final boolean wanted = Boolean.TRUE.equals(call.getBoolean("ticking", false));
+        tickHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (ticking != wanted) {
+                    ticking = wanted;
+                    lastMinute = -1;
+                    updateTicking();
+                }
+            }
+        });
+        call.resolve();
+    }
+
+    void setListener(Listener listener) {
+        this.listener = listener;
+        if (listener != null) {
+            listener.onPowerTierChanged(effectivePowerTier());
+        }
+    }
+
+    /**
+     * Nightstand mode caps the tier at REDUCED so the page drops to tick-driven repaints
+     */
+    void setNightstand(boolean nightstand) {
+        if (this.nightstand != nightstand) {
+            this.nightstand = nightstand;
+            publishPowerTier();
+        }
+    }
+
+    private PowerTier effectivePowerTier() {
+        if (nightstand && powerTier.ordinal() < PowerTier.REDUCED.ordinal()) {
+            return PowerTier.REDUCED;
+        }
+        return powerTier;
+    }
+
+    @Override
+    protected void handleOnResume() {
+        super.handleOnResume();
+        visible = true;
+        publishVisibility();
+    }
+
+    @Override
+    protected void handleOnPause() {
+        super.handleOnPause();
+        visible = false;
+        publishVisibility();
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        super.handleOnDestroy();
+        tickHandler.removeCallbacks(tickRunnable);
+        try {
+            getContext().unregisterReceiver(receiver);
+        } catch (IllegalArgumentException e) {
+            // Not registered
+        }
+    }
+
+    private void publishVisibility() {
+        JSObject data = new JSObject();
+        data.put("visible", visible && screenOn);
+        data.put("screenOn", screenOn);
+        notifyListeners(EVENT_VISIBILITY, data, true);
+        updateTicking();
+    }
+
+    private void publishPowerTier() {
+        JSObject data = new JSObject();
+        data.put("powerTier", effectivePowerTier().id);
+        data.put("nightstand", nightstand);
+        notifyListeners(EVENT_POWER_TIER, data, true);
+        if (listener != null) {
+            listener.onPowerTierChanged(effectivePowerTier());
+        }
+    }
+
+    private void publishTimeZone() {
+        TimeZone zone = TimeZone.getDefault();
+        JSObject data = new JSObject();
+        data.put("timeZone", zone.getID());
+        data.put("offsetMinutes", zone.getOffset(System.currentTimeMillis()) / 60000);
+        notifyListeners(EVENT_TIME_ZONE, data, true);
+        lastMinute = -1;
+        if (listener != null) {
+            listener.onTimeZoneChanged();
+        }
+    }
+
+    /**
+     * Ticks run only while the page asks for them and the clock can actually be seen
+     */
+    private void updateTicking() {
+        tickHandler.removeCallbacks(tickRunnable);
+        if (ticking && visible && screenOn) {
+            tickHandler.post(tickRunnable);
+        }
+    }
+}
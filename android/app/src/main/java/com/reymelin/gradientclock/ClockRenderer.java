@@ -0,0 +1,25 @@
+package com.reymelin.gradientclock;
+
+import android.graphics.Canvas;
+import android.view.SurfaceHolder;
+
+/**
+ * One way of turning a clock frame into pixels on a surface
+ * Surfaces hand an ordered list of these to RendererFallback, richest first,
+ * and never decide on a backend themselves
+ */
+interface ClockRenderer {
+
+    String WEBVIEW = "webview";
+    String HARDWARE = "hardware";
+    String SOFTWARE = "software";
+
+    String getName();
+
+    /**
+     * Canvas for the next frame, or null when the surface is not ready
+     */
+    Canvas lockCanvas(SurfaceHolder holder);
+
+    void draw(Canvas canvas, int width, int height, long nowMs);
+}
@@ -0,0 +1,271 @@
+package com.reymelin.gradientclock;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.view.Choreographer;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+/**
+ * Native ring surface for MainActivity
+ * Renders the rings and time on its own thread, paced by vsync, so the
+ * WebView above it only has to handle the controls
+ */
+final class ClockSurfaceView extends SurfaceView implements SurfaceHolder.Callback {
+
+    private static final int LAYER_CACHE_BYTES = 24 * 1024 * 1024;
+    // Settings previews are small and show one theme at a time
+    private static final int PREVIEW_LAYER_CACHE_BYTES = 4 * 1024 * 1024;
+
+    private final ClockFacePainter painter = new ClockFacePainter(ClockTheme.forName(ClockTheme.DEFAULT));
+    private final RingLayerCache layerCache;
+    private final RendererFallback renderers;
+    private final float density;
+
+    // Guards the surface and the painter; only the current loop may draw
+    private final Object surfaceLock = new Object();
+    private volatile RenderLoop loop;
+
+    // Written on the UI thread, read on the render thread
+    private volatile ClockTheme theme = ClockTheme.forName(ClockTheme.DEFAULT);
+    private volatile String timeFormat = ClockFacePainter.FORMAT_NONE;
+    private volatile String texture = ClockFacePainter.TEXTURE_NONE;
+    private volatile PowerTier powerTier = PowerTier.FULL;
+    private volatile ZoneOffsets zones = new ZoneOffsets(new String[0]);
+    private volatile boolean running;
+
+    ClockSurfaceView(Context context) {
+        this(context, "main", LAYER_CACHE_BYTES);
+    }
+
+    /**
+     * Live preview for a settings screen, with its own small layer budget and renderer choice
+     */
+    static ClockSurfaceView preview(Context context) {
+        return new ClockSurfaceView(context, "preview", PREVIEW_LAYER_CACHE_BYTES);
+    }
+
+    private ClockSurfaceView(Context context, String surface, int layerCacheBytes) {
+        super(context);
+        density = context.getResources().getDisplayMetrics().density;
+        layerCache = new RingLayerCache(surface + "_ring_layers", layerCacheBytes);
+        renderers = new RendererFallback(context, surface, RendererFallback.frameBudgetNanos(context),
+            PainterRenderer.hardware(painter), PainterRenderer.software(painter));
+        getHolder().addCallback(this);
+        ClockMemoryManager.register(layerCache);
+    }
+
+    void setClockState(String themeName, String timeFormat, String texture) {
+        this.theme = ClockTheme.forName(themeName);
+        this.timeFormat = timeFormat;
+        this.texture = texture;
+        requestRender();
+    }
+
+    /**
+     * Extra time zones drawn as small dials next to the clock
+     */
+    void setZones(String[] zoneIds) {
+        this.zones = new ZoneOffsets(zoneIds);
+        requestRender();
+    }
+
+    /**
+     * Local zone or clock changed; offsets are resolved again on the next frame
+     */
+    void onTimeZoneChanged() {
+        zones.invalidate();
+        requestRender();
+    }
+
+    void setPowerTier(PowerTier powerTier) {
+        this.powerTier = powerTier;
+        requestRender();
+    }
+
+    /**
+     * Start or stop rendering with the host's visibility
+     */
+    void setRunning(boolean running) {
+        this.running = running;
+        requestRender();
+    }
+
+    void release() {
+        ClockMemoryManager.unregister(layerCache);
+        stopRenderLoop();
+        layerCache.clear();
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        if (loop == null) {
+            loop = new RenderLoop();
+        }
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int w, int h) {
+        RenderLoop current = loop;
+        if (current != null) {
+            current.resize(w, h);
+        }
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        // Waits for at most the frame in flight; the loop thread winds down on its own
+        stopRenderLoop();
+    }
+
+    private void stopRenderLoop() {
+        RenderLoop current;
+        synchronized (surfaceLock) {
+            current = loop;
+            loop = null;
+        }
+        if (current != null) {
+            current.quit();
+        }
+    }
+
+    private void requestRender() {
+        RenderLoop current = loop;
+        if (current != null) {
+            current.requestRender();
+        }
+    }
+
+    /**
+     * One render thread for one surface lifetime
+     * All fields are confined to its thread; a replaced loop stops drawing
+     * as soon as it is no longer the view's current one
+     */
+    private final class RenderLoop {
+
+        private final HandlerThread thread;
+        private final Handler handler;
+        private Choreographer choreographer;
+        private int width;
+        private int height;
+        private boolean surfaceReady;
+        private boolean frameScheduled;
+
+        private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                frameScheduled = false;
+                drawFrame();
+                scheduleNextFrame();
+            }
+        };
+
+        private final Runnable tickRunnable = new Runnable() {
+            @Override
+            public void run() {
+                drawFrame();
+                scheduleNextFrame();
+            }
+        };
+
+        RenderLoop() {
+            thread = new HandlerThread("ClockSurfaceRender", android.os.Process.THREAD_PRIORITY_DISPLAY);
+            thread.start();
+            handler = new Handler(thread.getLooper());
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    // Choreographer is per looper; this one paces the render thread
+                    choreographer = Choreographer.getInstance();
+                }
+            });
+        }
+
+        void resize(final int w, final int h) {
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    width = w;
+                    height = h;
+                    surfaceReady = true;
+                    drawFrame();
+                    scheduleNextFrame();
+                }
+            });
+        }
+
+        void requestRender() {
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    handler.removeCallbacks(tickRunnable);
+                    if (frameScheduled) {
+                        choreographer.removeFrameCallback(frameCallback);
+                        frameScheduled = false;
+                    }
+                    drawFrame();
+                    scheduleNextFrame();
+                }
+            });
+        }
+
+        void quit() {
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    surfaceReady = false;
+                    frameScheduled = false;
+                    choreographer.removeFrameCallback(frameCallback);
+                    handler.removeCallbacks(tickRunnable);
+                }
+            });
+            thread.quitSafely();
+        }
+
+        /**
+         * Full tier follows vsync, lower tiers repaint once per second, hidden repaints never
+         */
+        private void scheduleNextFrame() {
+            if (!running || !surfaceReady || loop != this) {
+                return;
+            }
+            if (powerTier == PowerTier.FULL) {
+                if (!frameScheduled) {
+                    frameScheduled = true;
+                    choreographer.postFrameCallback(frameCallback);
+                }
+            } else {
+                handler.removeCallbacks(tickRunnable);
+                handler.postDelayed(tickRunnable, 1000 - (System.currentTimeMillis() % 1000));
+            }
+        }
+
+        private void drawFrame() {
+            if (!surfaceReady || width <= 0 || height <= 0) {
+                return;
+            }
+            synchronized (surfaceLock) {
+                // The surface must not be touched once surfaceDestroyed has returned
+                if (loop != this) {
+                    return;
+                }
+                ClockTheme currentTheme = theme;
+                painter.setTheme(currentTheme);
+                painter.setLayers(layerCache.get(currentTheme, width, height, density));
+                painter.setTimeFormat(timeFormat);
+                painter.setTexture(texture);
+                ZoneOffsets currentZones = zones;
+                if (painter.getZones() != currentZones) {
+                    painter.setZones(currentZones);
+                }
+
+                try {
+                    renderers.render(getHolder(), width, height, System.currentTimeMillis(), ClockRenderer.HARDWARE);
+                } catch (IllegalStateException e) {
+                    // Surface went away between checks
+                }
+            }
+        }
+    }
+}
@@ -1,14 +1,29 @@
 package com.reymelin.gradientclock;
 
+import android.app.WallpaperColors;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Point;
+import android.graphics.Rect;
+import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
 import android.service.wallpaper.WallpaperService;
+import android.view.Choreographer;
 import android.view.SurfaceHolder;
+import android.view.WindowManager;
 import android.webkit.WebView;
-import android.webkit.WebSettings;
 import android.view.MotionEvent;
+import androidx.core.content.ContextCompat;
+import org.json.JSONException;
+import org.json.JSONObject;
 
 /**
  * Gradient Clock Live Wallpaper
@@ -16,22 +31,152 @@ import android.view.MotionEvent;
  */
 public class GradientClockWallpaperService extends WallpaperService {
 
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Read the web assets into memory, then start the page once the first
+        // snapshot frame has had a chance to reach the screen
+        ClockMemoryManager.install(this);
+        ClockMemoryManager.register(ClockAssetLoader.TRIMMABLE);
+        ClockMemoryManager.register(SharedClockWebView.TRIMMABLE);
+        ClockAssetLoader.prewarm(this);
+        // Re-arm the theme schedule, since app updates clear pending alarms
+        ThemeScheduleReceiver.update(this);
+        DeviceProfile.calibrateIfNeeded(this);
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                SharedClockWebView.prewarm(GradientClockWallpaperService.this);
+            }
+        });
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        SharedClockWebView.destroy();
+    }
+
     @Override
     public Engine onCreateEngine() {
         return new GradientClockEngine();
     }
 
-    private class GradientClockEngine extends Engine {
+    private class GradientClockEngine extends Engine
+            implements ClockMemoryManager.Listener, ClockSettings.Listener, RendererFallback.Listener {
+        
+        // Horizontal travel of the front ring across all home screen pages, as a fraction of the width
+        private static final float PARALLAX_SHIFT = 0.06f;
         
         private Handler handler = new Handler(Looper.getMainLooper());
         private WebView webView;
         private boolean visible = false;
+        private int surfaceWidth;
+        private int surfaceHeight;
+        private String theme = ClockTheme.DEFAULT;
+        private String timeFormat = ClockFacePainter.FORMAT_NONE;
+        private boolean pageStateSynced;
+        private WallpaperTouchHandler touchHandler;
+        private Bitmap snapshot;
+        private ClockFacePainter nativePainter;
+        private boolean lowMemoryMode;
+        private boolean parallax;
+        private float resolutionScale = 1f;
+        // 16-bit surface with dithered blits, under the minimal power tier
+        private boolean lowBandwidth;
+        private float offsetX = 0.5f;
+        private float offsetY = 0.5f;
+        private float density;
+        private Choreographer choreographer;
+        private boolean frameScheduled;
+        private ZoneOffsets zones;
+        private ClockSettings settings;
+        private boolean settingsDirty;
+        private RendererFallback renderers;
+        private DeviceProfile profile;
+        private long vsyncMs;
+        private RingLayerCache layerCache;
+
+        private final ClockMemoryManager.TrimmableCache snapshotCache = new ClockMemoryManager.TrimmableCache() {
+            @Override
+            public String getName() {
+                return "wallpaper_snapshot";
+            }
+
+            @Override
+            public long getResidentBytes() {
+                Bitmap current = snapshot;
+                return current != null ? current.getAllocationByteCount() : 0;
+            }
+
+            @Override
+            public void trim(float keepFraction) {
+                if (keepFraction < 1f) {
+                    snapshot = null;
+                }
+            }
+        };
+        private final BroadcastReceiver powerReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                updatePowerTier();
+            }
+        };
+        private final BroadcastReceiver timeZoneReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                // Offsets are otherwise only re-resolved at DST transitions
+                zones.invalidate();
+            }
+        };
+
+        private final ClockRenderer webViewRenderer = new ClockRenderer() {
+            @Override
+            public String getName() {
+                return WEBVIEW;
+            }
+
+            @Override
+            public Canvas lockCanvas(SurfaceHolder holder) {
+                // The WebView path stays on a software canvas
+                return holder.lockCanvas();
+            }
+
+            @Override
+            public void draw(Canvas canvas, int width, int height, long nowMs) {
+                if (webView != null && SharedClockWebView.isOwner(GradientClockEngine.this)
+                        && SharedClockWebView.isPageReady()) {
+                    syncPageState();
+                    // Draw WebView content to canvas
+                    canvas.drawColor(ClockFacePainter.BACKGROUND_COLOR);
+                    webView.draw(canvas);
+                    // The page is live now, the snapshot is no longer needed
+                    snapshot = null;
+                } else if (snapshot != null) {
+                    FrameSnapshotStore.draw(canvas, snapshot, width, height);
+                } else {
+                    canvas.drawColor(ClockFacePainter.BACKGROUND_COLOR);
+                }
+            }
+        };
+
         private final Runnable updateRunnable = new Runnable() {
             @Override
             public void run() {
+                scheduleFrame();
+            }
+        };
+
+        private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                frameScheduled = false;
                 if (visible) {
+                    if (settingsDirty) {
+                        applySettings();
+                    }
                     draw();
-                    handler.postDelayed(this, 16); // ~60fps
+                    scheduleNextFrame();
                 }
             }
         };
@@ -40,45 +185,304 @@ public class GradientClockWallpaperService extends WallpaperService {
         public void onCreate(SurfaceHolder surfaceHolder) {
             super.onCreate(surfaceHolder);
             setTouchEventsEnabled(true);
+            choreographer = Choreographer.getInstance();
+            density = getResources().getDisplayMetrics().density;
+            
+            // Share the process-wide clock WebView instead of building one per engine
+            SharedClockWebView.register();
+            
+            settings = ClockSettings.get(GradientClockWallpaperService.this);
+            theme = settings.getWallpaperTheme();
+            timeFormat = settings.getWallpaperTimeFormat();
+            parallax = settings.isWallpaperParallax();
+            zones = new ZoneOffsets(settings.getWallpaperZones());
+            resolutionScale = settings.getWallpaperResolutionScale();
+            settings.addListener(this);
+            applyResolution();
+
+            // Frame rate, smoothing and cache size measured for this device
+            profile = DeviceProfile.get(GradientClockWallpaperService.this);
+            vsyncMs = RendererFallback.frameBudgetNanos(GradientClockWallpaperService.this) / 1_000_000L;
+            layerCache = new RingLayerCache("wallpaper_ring_layers", profile.layerCacheBytes);
+            nativePainter = new ClockFacePainter(ClockTheme.forName(theme));
+            nativePainter.setAntiAlias(profile.antiAlias);
+            nativePainter.setTimeFormat(timeFormat);
+            nativePainter.setZones(zones);
+            renderers = new RendererFallback(GradientClockWallpaperService.this,
+                FrameSnapshotStore.SURFACE_WALLPAPER,
+                RendererFallback.frameBudgetNanos(GradientClockWallpaperService.this),
+                webViewRenderer, PainterRenderer.hardware(nativePainter), PainterRenderer.software(nativePainter));
+            renderers.setListener(this);
+            
+            IntentFilter timeFilter = new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED);
+            timeFilter.addAction(Intent.ACTION_TIME_CHANGED);
+            ContextCompat.registerReceiver(GradientClockWallpaperService.this, timeZoneReceiver, timeFilter,
+                ContextCompat.RECEIVER_NOT_EXPORTED);
             
-            // Initialize WebView for rendering the clock
-            webView = new WebView(GradientClockWallpaperService.this);
-            WebSettings settings = webView.getSettings();
-            settings.setJavaScriptEnabled(true);
-            settings.setDomStorageEnabled(true);
-            settings.setAllowFileAccess(true);
-            settings.setAllowContentAccess(true);
+            ContextCompat.registerReceiver(GradientClockWallpaperService.this, powerReceiver,
+                PowerTier.changeFilter(), ContextCompat.RECEIVER_NOT_EXPORTED);
+            updatePowerTier();
             
-            // Load the clock HTML
-            webView.loadUrl("file:///android_asset/public/index.html");
-            webView.setBackgroundColor(0x00000000); // Transparent
-            webView.setLayerType(WebView.LAYER_TYPE_HARDWARE, null);
+            touchHandler = new WallpaperTouchHandler(GradientClockWallpaperService.this,
+                new WallpaperTouchHandler.Callback() {
+                    @Override
+                    public void onToggleTimeFormat() {
+                        toggleTimeFormat();
+                    }
+
+                    @Override
+                    public void onCycleTheme() {
+                        cycleTheme();
+                    }
+                });
+            
+            ClockMemoryManager.register(snapshotCache);
+            ClockMemoryManager.register(layerCache);
+            ClockMemoryManager.addListener(this);
+            lowMemoryMode = ClockMemoryManager.isLowMemoryMode();
+        }
+
+        @Override
+        public void onLowMemoryModeChanged(boolean lowMemory) {
+            lowMemoryMode = lowMemory;
+            if (lowMemory) {
+                // Render natively and let the page go
+                SharedClockWebView.release(this);
+                webView = null;
+                SharedClockWebView.destroyIfIdle();
+            } else if (!usesNativeRenderer()) {
+                switchRenderer();
+            }
+        }
+
+        /**
+         * The page could not keep up; let it go and continue on the native rings
+         */
+        @Override
+        public void onRendererDowngraded(ClockRenderer from, ClockRenderer to) {
+            if (ClockRenderer.WEBVIEW.equals(from.getName())) {
+                switchRenderer();
+            }
+        }
+
+        /**
+         * Settings changed elsewhere; picked up at the start of the next frame
+         */
+        @Override
+        public void onSettingsChanged(String scope, int widgetId) {
+            if (ClockSettings.SCOPE_WALLPAPER.equals(scope)) {
+                settingsDirty = true;
+                scheduleFrame();
+            }
+        }
+
+        /**
+         * Apply the current settings, dropping only the caches they affect
+         */
+        private void applySettings() {
+            settingsDirty = false;
+            String newTheme = settings.getWallpaperTheme();
+            String newTimeFormat = settings.getWallpaperTimeFormat();
+            boolean clockChanged = false;
+            ClockTheme fadeFrom = null;
+            if (!newTheme.equals(theme)) {
+                // Layers and snapshot of the old theme will not be drawn again
+                layerCache.invalidate(RingLayerCache.key(
+                    ClockTheme.forName(theme), surfaceWidth, surfaceHeight, density));
+                snapshot = null;
+                fadeFrom = ClockTheme.forName(theme);
+                theme = newTheme;
+                clockChanged = true;
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+                    // Colors only depend on the theme, never on the frame
+                    notifyColorsChanged();
+                }
+            }
+            if (!newTimeFormat.equals(timeFormat)) {
+                timeFormat = newTimeFormat;
+                clockChanged = true;
+            }
+            if (clockChanged) {
+                if (fadeFrom != null && visible) {
+                    // Blends were built once up front; frames only pick one
+                    nativePainter.setCrossFade(new ThemeCrossFade(fadeFrom, ClockTheme.forName(theme),
+                        System.currentTimeMillis(), ThemeCrossFade.DEFAULT_DURATION_MS));
+                } else {
+                    nativePainter.setTheme(ClockTheme.forName(theme));
+                }
+                nativePainter.setTimeFormat(timeFormat);
+                pageStateSynced = false;
+                syncPageState();
+            }
+
+            boolean wasNative = usesNativeRenderer();
+            parallax = settings.isWallpaperParallax();
+            String[] newZones = settings.getWallpaperZones();
+            if (!zones.hasZones(newZones)) {
+                zones = new ZoneOffsets(newZones);
+                nativePainter.setZones(zones);
+            }
+            if (!parallax) {
+                nativePainter.setParallax(0f, 0f);
+            }
+            float newScale = settings.getWallpaperResolutionScale();
+            if (newScale != resolutionScale) {
+                resolutionScale = newScale;
+                applyResolution();
+            }
+            if (wasNative != usesNativeRenderer()) {
+                switchRenderer();
+            }
+        }
+
+        private void switchRenderer() {
+            if (usesNativeRenderer()) {
+                detachWebView();
+            } else {
+                if (visible) {
+                    webView = SharedClockWebView.acquire(
+                        this, GradientClockWallpaperService.this, surfaceWidth, surfaceHeight
+                    );
+                    pageStateSynced = false;
+                }
+            }
+        }
+
+        @Override
+        public void onSurfaceCreated(SurfaceHolder holder) {
+            super.onSurfaceCreated(holder);
+            // Show the last frame right away while the WebView loads
+            Rect frame = holder.getSurfaceFrame();
+            if (snapshot == null) {
+                snapshot = FrameSnapshotStore.load(
+                    GradientClockWallpaperService.this,
+                    FrameSnapshotStore.SURFACE_WALLPAPER, theme, frame.width(), frame.height()
+                );
+            }
+            if (snapshot != null) {
+                drawSnapshot(holder, frame.width(), frame.height());
+            }
         }
 
         @Override
         public void onVisibilityChanged(boolean visible) {
             this.visible = visible;
             if (visible) {
+                if (!usesNativeRenderer()) {
+                    webView = SharedClockWebView.acquire(
+                        this, GradientClockWallpaperService.this, surfaceWidth, surfaceHeight
+                    );
+                    pageStateSynced = false;
+                }
                 handler.post(updateRunnable);
             } else {
-                handler.removeCallbacks(updateRunnable);
+                cancelFrames();
+                touchHandler.cancel();
+                detachWebView();
+            }
+        }
+
+        @Override
+        public void onOffsetsChanged(float xOffset, float yOffset, float xOffsetStep, float yOffsetStep,
+                                     int xPixelOffset, int yPixelOffset) {
+            super.onOffsetsChanged(xOffset, yOffset, xOffsetStep, yOffsetStep, xPixelOffset, yPixelOffset);
+            // Only record the offset; a swipe delivers several per frame and the next vsync draws once
+            offsetX = xOffset;
+            offsetY = yOffsetStep > 0f ? yOffset : 0.5f;
+            if (parallax && visible) {
+                scheduleFrame();
             }
         }
 
         @Override
         public void onTouchEvent(MotionEvent event) {
             super.onTouchEvent(event);
-            // Pass touch events to WebView
-            if (webView != null) {
-                webView.dispatchTouchEvent(event);
+            // Handled natively; nothing here redraws or reaches the WebView
+            touchHandler.onTouchEvent(event);
+        }
+
+        private void toggleTimeFormat() {
+            String next;
+            if (ClockFacePainter.FORMAT_NONE.equals(timeFormat)) {
+                next = ClockFacePainter.FORMAT_MILITARY;
+            } else if (ClockFacePainter.FORMAT_MILITARY.equals(timeFormat)) {
+                next = ClockFacePainter.FORMAT_AMPM;
+            } else {
+                next = ClockFacePainter.FORMAT_NONE;
+            }
+            settings.setWallpaperClock(theme, next);
+            applySettings();
+        }
+
+        private void cycleTheme() {
+            int next = 0;
+            for (int i = 0; i < ClockTheme.NAMES.length; i++) {
+                if (ClockTheme.NAMES[i].equals(theme)) {
+                    next = (i + 1) % ClockTheme.NAMES.length;
+                    break;
+                }
+            }
+            settings.setWallpaperClock(ClockTheme.NAMES[next], timeFormat);
+            applySettings();
+        }
+
+        /**
+         * Wallpaper colors straight from the theme palette, so the system never samples the surface
+         */
+        @Override
+        public WallpaperColors onComputeColors() {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O_MR1) {
+                return null;
+            }
+            ClockTheme palette = ClockTheme.forName(theme);
+            Color primary = Color.valueOf(palette.secondsAverage);
+            Color secondary = Color.valueOf(palette.minutesAverage);
+            Color tertiary = Color.valueOf(palette.hoursAverage);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+                // The rings sit on a near-black background that fills most of the screen
+                return new WallpaperColors(primary, secondary, tertiary, WallpaperColors.HINT_SUPPORTS_DARK_THEME);
+            }
+            return new WallpaperColors(primary, secondary, tertiary);
+        }
+
+        private void syncPageState() {
+            if (pageStateSynced || webView == null || !SharedClockWebView.isOwner(this)
+                    || !SharedClockWebView.isPageReady()) {
+                return;
+            }
+            try {
+                JSONObject state = new JSONObject();
+                state.put("theme", theme);
+                state.put("timeFormat", timeFormat);
+                webView.evaluateJavascript(
+                    "if (window.applyClockState) applyClockState(" + state + ");", null
+                );
+                pageStateSynced = true;
+            } catch (JSONException e) {
+                // Only string values are put
             }
         }
 
         @Override
         public void onSurfaceChanged(SurfaceHolder holder, int format, int width, int height) {
             super.onSurfaceChanged(holder, format, width, height);
-            if (webView != null) {
-                webView.layout(0, 0, width, height);
+            surfaceWidth = width;
+            surfaceHeight = height;
+            if (resolutionScale < 1f) {
+                Point screen = screenSize();
+                if (width != scaled(screen.x) || height != scaled(screen.y)) {
+                    // Rotated since the fixed size was set; another change follows with the new buffer
+                    applyResolution();
+                }
+                // Touches stay in window coordinates, which keep the screen size
+                touchHandler.setSurfaceSize(screen.x, screen.y);
+            } else {
+                touchHandler.setSurfaceSize(width, height);
+            }
+            SharedClockWebView.resize(this, width, height);
+            if (usesNativeRenderer() && !lowMemoryMode) {
+                // Rasterize now so the first swipe only translates cached layers
+                layerCache.get(ClockTheme.forName(theme), width, height, density);
             }
         }
 
@@ -86,28 +490,145 @@ public class GradientClockWallpaperService extends WallpaperService {
         public void onSurfaceDestroyed(SurfaceHolder holder) {
             super.onSurfaceDestroyed(holder);
             visible = false;
-            handler.removeCallbacks(updateRunnable);
+            cancelFrames();
+            touchHandler.cancel();
+            detachWebView();
         }
 
         @Override
         public void onDestroy() {
             super.onDestroy();
+            cancelFrames();
+            webView = null;
+            snapshot = null;
+            nativePainter = null;
+            ClockMemoryManager.removeListener(this);
+            ClockMemoryManager.unregister(snapshotCache);
+            ClockMemoryManager.unregister(layerCache);
+            layerCache.clear();
+            unregisterReceiver(timeZoneReceiver);
+            unregisterReceiver(powerReceiver);
+            settings.removeListener(this);
+            SharedClockWebView.unregister(this);
+        }
+
+        /**
+         * Render into a smaller buffer and let the compositor scale it to the screen;
+         * fill rate and layer memory drop with the square of the scale
+         */
+        private void applyResolution() {
+            SurfaceHolder holder = getSurfaceHolder();
+            if (resolutionScale >= 1f) {
+                holder.setSizeFromLayout();
+            } else {
+                Point screen = screenSize();
+                holder.setFixedSize(scaled(screen.x), scaled(screen.y));
+            }
+        }
+
+        /**
+         * Halve per-frame surface bandwidth at the minimal tier; cached layers stay valid
+         * since only their blits are dithered
+         */
+        private void updatePowerTier() {
+            boolean minimal = PowerTier.current(GradientClockWallpaperService.this) == PowerTier.MINIMAL;
+            if (minimal == lowBandwidth) {
+                return;
+            }
+            lowBandwidth = minimal;
+            getSurfaceHolder().setFormat(minimal ? PixelFormat.RGB_565 : PixelFormat.RGBX_8888);
+            nativePainter.setDither(minimal);
+            scheduleFrame();
+        }
+
+        private int scaled(int size) {
+            return Math.max(1, Math.round(size * resolutionScale));
+        }
+
+        private Point screenSize() {
+            Point size = new Point();
+            WindowManager windowManager = (WindowManager) getSystemService(WINDOW_SERVICE);
+            windowManager.getDefaultDisplay().getRealSize(size);
+            return size;
+        }
+
+        /**
+         * Parallax and zone dials need the rings as separate layers, which only the native painter
+         * has; the page is also dropped for good once it missed its frame budget
+         */
+        private boolean usesNativeRenderer() {
+            return lowMemoryMode || parallax || zones.extraCount() > 0 || !renderers.allows(ClockRenderer.WEBVIEW);
+        }
+
+        /**
+         * Request one draw on the next vsync; repeated requests within a frame coalesce
+         */
+        private void scheduleFrame() {
+            if (!frameScheduled && visible) {
+                frameScheduled = true;
+                choreographer.postFrameCallback(frameCallback);
+            }
+        }
+
+        /**
+         * Next frame once something moves visibly, and never faster than the profile's rate;
+         * waits within a vsync follow vsync, longer ones sleep on a delayed tick
+         */
+        private void scheduleNextFrame() {
+            long delayMs = profile.maxFps >= DeviceProfile.DEFAULT_MAX_FPS ? 0 : profile.frameIntervalMs();
+            // The page animates on its own and a fade changes every frame, so only still native rings wait
+            if (usesNativeRenderer() && !nativePainter.isCrossFading()) {
+                float radius = ClockFacePainter.clockSize(surfaceWidth, surfaceHeight) / 2f;
+                delayMs = Math.max(delayMs, RingMotion.nextVisibleChangeMs(
+                    radius * ClockFacePainter.SECONDS_SCALE, radius * ClockFacePainter.MINUTES_SCALE,
+                    !ClockFacePainter.FORMAT_NONE.equals(timeFormat), System.currentTimeMillis()));
+            }
+            if (delayMs <= vsyncMs) {
+                scheduleFrame();
+            } else {
+                handler.removeCallbacks(updateRunnable);
+                handler.postDelayed(updateRunnable, delayMs);
+            }
+        }
+
+        private void cancelFrames() {
             handler.removeCallbacks(updateRunnable);
-            if (webView != null) {
-                webView.destroy();
-                webView = null;
+            if (frameScheduled) {
+                choreographer.removeFrameCallback(frameCallback);
+                frameScheduled = false;
             }
         }
 
-        private void draw() {
-            SurfaceHolder holder = getSurfaceHolder();
+        private void detachWebView() {
+            saveSnapshot();
+            SharedClockWebView.release(this);
+            webView = null;
+        }
+
+        /**
+         * Persist a downscaled copy of the current page for the next cold start
+         */
+        private void saveSnapshot() {
+            if (webView == null || !SharedClockWebView.isOwner(this) || !SharedClockWebView.isPageReady()
+                    || surfaceWidth <= 0 || surfaceHeight <= 0) {
+                return;
+            }
+            Bitmap frame = FrameSnapshotStore.createCaptureBitmap(surfaceWidth, surfaceHeight);
+            Canvas canvas = FrameSnapshotStore.createCaptureCanvas(frame, surfaceWidth, surfaceHeight);
+            canvas.drawColor(ClockFacePainter.BACKGROUND_COLOR);
+            webView.draw(canvas);
+            FrameSnapshotStore.saveAsync(
+                GradientClockWallpaperService.this,
+                FrameSnapshotStore.SURFACE_WALLPAPER, theme, surfaceWidth, surfaceHeight, frame
+            );
+        }
+
+        private void drawSnapshot(SurfaceHolder holder, int width, int height) {
             Canvas canvas = null;
             try {
                 canvas = holder.lockCanvas();
-                if (canvas != null && webView != null) {
-                    // Draw WebView content to canvas
-                    canvas.drawColor(0xFF0a0a0a); // Background color
-                    webView.draw(canvas);
+                if (canvas != null) {
+                    FrameSnapshotStore.draw(canvas, snapshot, width, height);
                 }
             } finally {
                 if (canvas != null) {
@@ -115,5 +636,22 @@ public class GradientClockWallpaperService extends WallpaperService {
                 }
             }
         }
+
+        private void draw() {
+            boolean nativeRings = usesNativeRenderer();
+            if (nativeRings) {
+                // Low memory falls back to live shaders so the layer cache can stay empty
+                nativePainter.setLayers(lowMemoryMode
+                    ? null
+                    : layerCache.get(nativePainter.getTheme(), surfaceWidth, surfaceHeight, density));
+                if (parallax) {
+                    // Same layers every frame of a swipe; only their translation changes
+                    float shift = surfaceWidth * PARALLAX_SHIFT;
+                    nativePainter.setParallax((0.5f - offsetX) * 2f * shift, (0.5f - offsetY) * 2f * shift);
+                }
+            }
+            renderers.render(getSurfaceHolder(), surfaceWidth, surfaceHeight, System.currentTimeMillis(),
+                nativeRings ? ClockRenderer.HARDWARE : ClockRenderer.WEBVIEW);
+        }
     }
 }
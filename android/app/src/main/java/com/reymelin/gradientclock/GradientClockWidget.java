@@ -6,10 +6,18 @@ import android.appwidget.AppWidgetProvider;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
-import android.webkit.WebView;
+import android.util.SparseArray;
+import android.util.SparseLongArray;
+import android.util.TypedValue;
+import android.view.View;
 import android.widget.RemoteViews;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Gradient Clock Home Screen Widget
@@ -18,15 +26,40 @@ import android.widget.RemoteViews;
 public class GradientClockWidget extends AppWidgetProvider {
     
     private static final String ACTION_UPDATE = "com.reymelin.gradientclock.ACTION_UPDATE_WIDGET";
+    private static final int DEFAULT_SIZE_DP = 250;
+    private static final long SNAPSHOT_INTERVAL_MS = 60 * 1000L;
+    // The rings only need the app once a minute; the TextClock ticks the seconds itself
+    private static final long UPDATE_INTERVAL_MS = 60 * 1000L;
+
     private static Handler updateHandler;
     private static Runnable updateRunnable;
 
+    // Frames are rendered off the main thread; the painter is only touched by this executor
+    private static final ExecutorService renderExecutor = Executors.newSingleThreadExecutor();
+    private static final SparseLongArray lastSnapshotTimes = new SparseLongArray();
+    private static volatile ClockFacePainter painter;
+
+    // Ring layers for every widget size on screen, bounded in bytes
+    private static final RingLayerCache layerCache = new RingLayerCache(
+        "widget_ring_layers", (int) Math.min(16L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 16)
+    );
+    private static final SparseArray<String> layerKeys = new SparseArray<>();
+    private static boolean installed;
+    private static Bitmap frameBitmap;
+
     @Override
     public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
-        // Update each widget instance
-        for (int appWidgetId : appWidgetIds) {
-            updateAppWidget(context, appWidgetManager, appWidgetId);
+        install(context);
+
+        // Cold process: put the last persisted frame up before the first real render
+        if (painter == null) {
+            for (int appWidgetId : appWidgetIds) {
+                showSnapshot(context, appWidgetManager, appWidgetId);
+            }
         }
+
+        // Render each widget instance in the background
+        renderAsync(context, appWidgetManager, appWidgetIds, goAsync(), false);
         
         // Start periodic updates for smooth animation
         startPeriodicUpdates(context);
@@ -36,9 +69,41 @@ public class GradientClockWidget extends AppWidgetProvider {
     public void onEnabled(Context context) {
         // First widget created
         super.onEnabled(context);
+        AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+        int[] appWidgetIds = appWidgetManager.getAppWidgetIds(
+            new ComponentName(context, GradientClockWidget.class)
+        );
+        for (int appWidgetId : appWidgetIds) {
+            showSnapshot(context, appWidgetManager, appWidgetId);
+        }
         startPeriodicUpdates(context);
     }
 
+    @Override
+    public void onAppWidgetOptionsChanged(Context context, AppWidgetManager appWidgetManager,
+                                          int appWidgetId, Bundle newOptions) {
+        super.onAppWidgetOptionsChanged(context, appWidgetManager, appWidgetId, newOptions);
+        // Resized: drop the layers for the old size and render at the new one
+        renderAsync(context, appWidgetManager, new int[]{ appWidgetId }, goAsync(), true);
+    }
+
+    @Override
+    public void onDeleted(Context context, int[] appWidgetIds) {
+        super.onDeleted(context, appWidgetIds);
+        for (int appWidgetId : appWidgetIds) {
+            ClockSettings.get(context).removeWidget(appWidgetId);
+        }
+        renderExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (int appWidgetId : appWidgetIds) {
+                    releaseLayers(appWidgetId);
+                    lastSnapshotTimes.delete(appWidgetId);
+                }
+            }
+        });
+    }
+
     @Override
     public void onDisabled(Context context) {
         // Last widget removed
@@ -59,7 +124,164 @@ public class GradientClockWidget extends AppWidgetProvider {
         }
     }
 
+    /**
+     * Register the layer cache and the settings listener once per process; after
+     * this, saving a widget's settings is enough to re-render it
+     */
+    static synchronized void install(Context context) {
+        if (installed) {
+            return;
+        }
+        installed = true;
+        ClockMemoryManager.install(context);
+        ClockMemoryManager.register(layerCache);
+        DeviceProfile.calibrateIfNeeded(context);
+        listenForSettings(context.getApplicationContext());
+    }
+
+    /**
+     * Re-render only the widget whose settings changed, releasing its old layers
+     */
+    private static void listenForSettings(final Context context) {
+        ClockSettings.get(context).addListener(new ClockSettings.Listener() {
+            @Override
+            public void onSettingsChanged(String scope, int widgetId) {
+                if (ClockSettings.SCOPE_WIDGET.equals(scope)) {
+                    renderAsync(context, AppWidgetManager.getInstance(context), new int[]{ widgetId }, null, true);
+                }
+            }
+        });
+    }
+
+    private static void renderAsync(final Context context, final AppWidgetManager appWidgetManager,
+                                    final int[] appWidgetIds, final PendingResult pendingResult,
+                                    final boolean optionsChanged) {
+        renderExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int appWidgetId : appWidgetIds) {
+                        if (optionsChanged) {
+                            releaseLayers(appWidgetId);
+                        }
+                        updateAppWidget(context, appWidgetManager, appWidgetId);
+                    }
+                } finally {
+                    if (pendingResult != null) {
+                        pendingResult.finish();
+                    }
+                }
+            }
+        });
+    }
+
     private static void updateAppWidget(Context context, AppWidgetManager appWidgetManager, int appWidgetId) {
+        ClockSettings settings = ClockSettings.get(context);
+        String theme = settings.getWidgetTheme(appWidgetId);
+        String timeFormat = settings.getWidgetTimeFormat(appWidgetId);
+        int[] size = getWidgetSize(context, appWidgetManager, appWidgetId);
+
+        if (painter == null) {
+            painter = new ClockFacePainter(ClockTheme.forName(theme));
+            painter.setAntiAlias(DeviceProfile.get(context).antiAlias);
+        }
+        ClockTheme clockTheme = ClockTheme.forName(theme);
+        float density = context.getResources().getDisplayMetrics().density;
+        String layerKey = RingLayerCache.key(clockTheme, size[0], size[1], density);
+        if (!layerKey.equals(layerKeys.get(appWidgetId))) {
+            releaseLayers(appWidgetId);
+            layerKeys.put(appWidgetId, layerKey);
+        }
+        painter.setTheme(clockTheme);
+        painter.setLayers(layerCache.get(clockTheme, size[0], size[1], density));
+        // The time is a TextClock on top, so the bitmap stays valid for the whole minute
+        painter.setTimeFormat(ClockFacePainter.FORMAT_NONE);
+        // Widget renders are rare enough to re-resolve the local offset each time,
+        // which also covers time zone changes the provider never hears about
+        painter.getZones().invalidate();
+
+        long now = System.currentTimeMillis();
+        Bitmap frame = obtainFrameBitmap(size[0], size[1]);
+        painter.draw(new Canvas(frame), size[0], size[1], now);
+
+        RemoteViews views = createRemoteViews(context);
+        views.setImageViewBitmap(R.id.widget_frame, frame);
+        bindTimeText(views, timeFormat, size);
+        appWidgetManager.updateAppWidget(appWidgetId, views);
+
+        // Keep the persisted snapshot reasonably fresh without writing every second
+        if (now - lastSnapshotTimes.get(appWidgetId, 0L) >= SNAPSHOT_INTERVAL_MS) {
+            lastSnapshotTimes.put(appWidgetId, now);
+            Bitmap capture = FrameSnapshotStore.createCaptureBitmap(size[0], size[1]);
+            FrameSnapshotStore.createCaptureCanvas(capture, size[0], size[1]).drawBitmap(frame, 0, 0, null);
+            FrameSnapshotStore.saveAsync(
+                context, FrameSnapshotStore.SURFACE_WIDGET, theme, size[0], size[1], capture
+            );
+        }
+    }
+
+    /**
+     * Reuse one frame bitmap across renders; RemoteViews copies it when the update is sent
+     */
+    private static Bitmap obtainFrameBitmap(int width, int height) {
+        if (frameBitmap != null && frameBitmap.getWidth() == width && frameBitmap.getHeight() == height) {
+            return frameBitmap;
+        }
+        if (frameBitmap != null && frameBitmap.getAllocationByteCount() >= width * height * 4) {
+            frameBitmap.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+        } else {
+            frameBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+        return frameBitmap;
+    }
+
+    /**
+     * Forget a widget's layer key, invalidating the layers if no other widget shares them
+     */
+    private static void releaseLayers(int appWidgetId) {
+        String key = layerKeys.get(appWidgetId);
+        if (key == null) {
+            return;
+        }
+        layerKeys.remove(appWidgetId);
+        if (layerKeys.indexOfValue(key) < 0) {
+            layerCache.invalidate(key);
+        }
+    }
+
+    private static void showSnapshot(Context context, AppWidgetManager appWidgetManager, int appWidgetId) {
+        ClockSettings settings = ClockSettings.get(context);
+        String theme = settings.getWidgetTheme(appWidgetId);
+        int[] size = getWidgetSize(context, appWidgetManager, appWidgetId);
+        Bitmap snapshot = FrameSnapshotStore.load(
+            context, FrameSnapshotStore.SURFACE_WIDGET, theme, size[0], size[1]
+        );
+        if (snapshot != null) {
+            RemoteViews views = createRemoteViews(context);
+            views.setImageViewBitmap(R.id.widget_frame, snapshot);
+            bindTimeText(views, settings.getWidgetTimeFormat(appWidgetId), size);
+            appWidgetManager.updateAppWidget(appWidgetId, views);
+        }
+    }
+
+    /**
+     * Digital time as a launcher-side TextClock, sized and placed like the painter's text
+     */
+    private static void bindTimeText(RemoteViews views, String timeFormat, int[] size) {
+        String pattern = ClockFacePainter.timePattern(timeFormat);
+        if (pattern == null) {
+            views.setViewVisibility(R.id.widget_time, View.GONE);
+            return;
+        }
+        views.setViewVisibility(R.id.widget_time, View.VISIBLE);
+        // Same pattern for both, so the system 12/24-hour setting cannot override the widget's choice
+        views.setCharSequence(R.id.widget_time, "setFormat12Hour", pattern);
+        views.setCharSequence(R.id.widget_time, "setFormat24Hour", pattern);
+        views.setTextViewTextSize(R.id.widget_time, TypedValue.COMPLEX_UNIT_PX,
+            ClockFacePainter.clockSize(size[0], size[1]) * 0.08f);
+    }
+
+    private static RemoteViews createRemoteViews(Context context) {
         RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.gradient_clock_widget);
         
         // Set up click intent to open main app
@@ -68,9 +290,21 @@ public class GradientClockWidget extends AppWidgetProvider {
             context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
         );
         views.setOnClickPendingIntent(R.id.widget_layout, pendingIntent);
-        
-        // Update the widget
-        appWidgetManager.updateAppWidget(appWidgetId, views);
+        return views;
+    }
+
+    /**
+     * Widget size in pixels from the AppWidget options
+     */
+    private static int[] getWidgetSize(Context context, AppWidgetManager appWidgetManager, int appWidgetId) {
+        Bundle options = appWidgetManager.getAppWidgetOptions(appWidgetId);
+        int widthDp = options.getInt(AppWidgetManager.OPTION_APPWIDGET_MIN_WIDTH, DEFAULT_SIZE_DP);
+        int heightDp = options.getInt(AppWidgetManager.OPTION_APPWIDGET_MAX_HEIGHT, DEFAULT_SIZE_DP);
+        float density = context.getResources().getDisplayMetrics().density;
+        return new int[]{
+            Math.max(1, Math.round((widthDp > 0 ? widthDp : DEFAULT_SIZE_DP) * density)),
+            Math.max(1, Math.round((heightDp > 0 ? heightDp : DEFAULT_SIZE_DP) * density))
+        };
     }
 
     private static void startPeriodicUpdates(Context context) {
@@ -84,8 +318,8 @@ public class GradientClockWidget extends AppWidgetProvider {
                     intent.setAction(ACTION_UPDATE);
                     context.sendBroadcast(intent);
                     
-                    // Schedule next update (1 second for smooth animation)
-                    updateHandler.postDelayed(this, 1000);
+                    // Next update on the minute boundary
+                    updateHandler.postDelayed(this, UPDATE_INTERVAL_MS - System.currentTimeMillis() % UPDATE_INTERVAL_MS);
                 }
             };
             updateHandler.post(updateRunnable);
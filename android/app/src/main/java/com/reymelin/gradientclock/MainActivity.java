@@ -1,12 +1,21 @@
 package com.reymelin.gradientclock;
 
+import android.graphics.Color;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.PowerManager;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewGroup;
 import android.view.WindowManager;
 import android.webkit.WebSettings;
 import android.webkit.WebView;
 import com.getcapacitor.BridgeActivity;
+import com.getcapacitor.PluginHandle;
 
 /**
  * Optimized MainActivity for Gradient Clock
@@ -14,10 +23,51 @@ import com.getcapacitor.BridgeActivity;
  */
 public class MainActivity extends BridgeActivity {
     
+    private static final String TAG = "MainActivity";
+    private static final float NIGHTSTAND_BRIGHTNESS = 0.05f;
+
     private PowerManager.WakeLock wakeLock;
+    private ClockSurfaceView clockSurface;
+    private long pausedAtCpuMs = -1;
+    private long pausedAtElapsedMs;
+    // Touches of the gesture that ended nightstand mode are not passed on
+    private boolean wakeGesture;
+
+    private final NightstandController nightstand = new NightstandController(
+        NightstandController.DEFAULT_TIMEOUT_MS,
+        new NightstandController.Callback() {
+            @Override
+            public void onNightstandChanged(boolean active) {
+                applyNightstand(active);
+            }
+        }
+    );
+
+    private final ClockMemoryManager.TrimmableCache webViewCache = new ClockMemoryManager.TrimmableCache() {
+        @Override
+        public String getName() {
+            return "main_webview";
+        }
+
+        @Override
+        public long getResidentBytes() {
+            return -1;
+        }
+
+        @Override
+        public void trim(float keepFraction) {
+            WebView webView = getBridge() != null ? getBridge().getWebView() : null;
+            if (webView != null && keepFraction <= 0f) {
+                // Drops the in-memory resource cache only; disk cache is kept
+                webView.clearCache(false);
+            }
+        }
+    };
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
+        // Native ticks, visibility and power state for the web clock
+        registerPlugin(ClockBridgePlugin.class);
         super.onCreate(savedInstanceState);
         
         // Enable immersive fullscreen mode
@@ -26,6 +76,20 @@ public class MainActivity extends BridgeActivity {
         // Optimize WebView performance
         optimizeWebView();
         
+        // Render the rings natively; the WebView only keeps the controls
+        installNativeRings();
+        
+        // Measure this device once per app version for the wallpaper, widget and watch face
+        DeviceProfile.calibrateIfNeeded(this);
+        
+        // Warm the shared asset cache for the wallpaper preview and other WebViews
+        ClockAssetLoader.prewarm(this);
+        
+        // Shed caches under memory pressure
+        ClockMemoryManager.install(this);
+        ClockMemoryManager.register(webViewCache);
+        ClockMemoryManager.register(ClockAssetLoader.TRIMMABLE);
+        
         // Keep screen on (optional, can be controlled by user preference)
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
         
@@ -40,12 +104,38 @@ public class MainActivity extends BridgeActivity {
         super.onResume();
         enableImmersiveMode();
         acquireWakeLock();
+        resumeWebRendering();
+        if (clockSurface != null) {
+            clockSurface.setRunning(true);
+        }
+        nightstand.start();
     }
 
     @Override
     public void onPause() {
         super.onPause();
+        nightstand.stop();
         releaseWakeLock();
+        if (clockSurface != null) {
+            clockSurface.setRunning(false);
+        }
+        pauseWebRendering();
+    }
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent event) {
+        int action = event.getActionMasked();
+        if (action == MotionEvent.ACTION_DOWN) {
+            // Restore full presentation on the first touch; that gesture only wakes the clock
+            wakeGesture = nightstand.onUserActivity();
+        }
+        if (wakeGesture) {
+            if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+                wakeGesture = false;
+            }
+            return true;
+        }
+        return super.dispatchTouchEvent(event);
     }
 
     @Override
@@ -82,11 +172,10 @@ public class MainActivity extends BridgeActivity {
             // Enable hardware acceleration
             bridge.setLayerType(View.LAYER_TYPE_HARDWARE, null);
             
-            // Optimize rendering
-            settings.setRenderPriority(WebSettings.RenderPriority.HIGH);
+            // Keep the renderer important while the clock is on screen
+            setRendererImportant(bridge, true);
             
             // Enable caching
-            settings.setAppCacheEnabled(true);
             settings.setCacheMode(WebSettings.LOAD_DEFAULT);
             
             // Optimize JavaScript execution
@@ -100,9 +189,148 @@ public class MainActivity extends BridgeActivity {
             
             // Enable DOM storage for local preferences
             settings.setDomStorageEnabled(true);
+            
+            // Assets are served over the local https scheme, so file access is not needed
+            settings.setAllowFileAccess(false);
         }
     }
 
+    /**
+     * Put a native ring surface under a transparent WebView and sync it over ClockBridge
+     */
+    private void installNativeRings() {
+        WebView webView = getBridge() != null ? getBridge().getWebView() : null;
+        ClockBridgePlugin plugin = getClockBridge();
+        if (webView == null || plugin == null || !(webView.getParent() instanceof ViewGroup)) {
+            return;
+        }
+
+        clockSurface = new ClockSurfaceView(this);
+        ViewGroup parent = (ViewGroup) webView.getParent();
+        parent.addView(clockSurface, 0, new ViewGroup.LayoutParams(
+            ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT
+        ));
+        webView.setBackgroundColor(Color.TRANSPARENT);
+
+        plugin.setListener(new ClockBridgePlugin.Listener() {
+            @Override
+            public void onClockStateChanged(String theme, String timeFormat, String texture) {
+                if (clockSurface != null) {
+                    clockSurface.setClockState(theme, timeFormat, texture);
+                }
+            }
+
+            @Override
+            public void onPowerTierChanged(PowerTier tier) {
+                if (clockSurface != null) {
+                    clockSurface.setPowerTier(tier);
+                }
+            }
+
+            @Override
+            public void onZonesChanged(String[] zoneIds) {
+                if (clockSurface != null) {
+                    clockSurface.setZones(zoneIds);
+                }
+            }
+
+            @Override
+            public void onTimeZoneChanged() {
+                if (clockSurface != null) {
+                    clockSurface.onTimeZoneChanged();
+                }
+            }
+        });
+    }
+
+    /**
+     * Suspend all web rendering while the activity is not visible
+     */
+    private void pauseWebRendering() {
+        WebView webView = getBridge() != null ? getBridge().getWebView() : null;
+        if (webView == null) {
+            return;
+        }
+        Trace.beginSection("GradientClock:pauseWebRendering");
+        try {
+            webView.onPause();
+            // pauseTimers() is process-wide; leave timers running if the wallpaper page is on screen
+            if (!SharedClockWebView.hasOwner()) {
+                webView.pauseTimers();
+            }
+            setRendererImportant(webView, false);
+        } finally {
+            Trace.endSection();
+        }
+        pausedAtCpuMs = Process.getElapsedCpuTime();
+        pausedAtElapsedMs = SystemClock.elapsedRealtime();
+        Log.i(TAG, "Web rendering paused");
+    }
+
+    /**
+     * Resume web rendering and force a full repaint of the clock
+     */
+    private void resumeWebRendering() {
+        WebView webView = getBridge() != null ? getBridge().getWebView() : null;
+        if (webView == null) {
+            return;
+        }
+        Trace.beginSection("GradientClock:resumeWebRendering");
+        try {
+            webView.resumeTimers();
+            webView.onResume();
+            setRendererImportant(webView, true);
+            webView.evaluateJavascript(
+                "if (typeof forceRepaint === 'function') forceRepaint();", null
+            );
+            webView.invalidate();
+        } finally {
+            Trace.endSection();
+        }
+
+        if (pausedAtCpuMs >= 0) {
+            // CPU spent by the whole process while we were in the background
+            long cpuMs = Process.getElapsedCpuTime() - pausedAtCpuMs;
+            long wallMs = SystemClock.elapsedRealtime() - pausedAtElapsedMs;
+            Log.i(TAG, "Web rendering resumed after " + wallMs + " ms, background CPU " + cpuMs + " ms");
+            pausedAtCpuMs = -1;
+        }
+    }
+
+    private static void setRendererImportant(WebView webView, boolean important) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            if (important) {
+                webView.setRendererPriorityPolicy(WebView.RENDERER_PRIORITY_IMPORTANT, false);
+            } else {
+                webView.setRendererPriorityPolicy(WebView.RENDERER_PRIORITY_WAIVED, true);
+            }
+        }
+    }
+
+    /**
+     * Dim the screen and step the page down to tick-driven repaints, or undo it
+     */
+    private void applyNightstand(boolean active) {
+        WindowManager.LayoutParams params = getWindow().getAttributes();
+        params.screenBrightness = active
+            ? NIGHTSTAND_BRIGHTNESS
+            : WindowManager.LayoutParams.BRIGHTNESS_OVERRIDE_NONE;
+        getWindow().setAttributes(params);
+
+        ClockBridgePlugin plugin = getClockBridge();
+        if (plugin != null) {
+            plugin.setNightstand(active);
+        }
+    }
+
+    private ClockBridgePlugin getClockBridge() {
+        if (getBridge() == null) {
+            return null;
+        }
+        PluginHandle handle = getBridge().getPlugin("ClockBridge");
+        return handle != null ? (ClockBridgePlugin) handle.getInstance() : null;
+    }
+
     /**
      * Acquire partial wake lock to keep CPU running for smooth animations
      */
@@ -133,6 +361,11 @@ public class MainActivity extends BridgeActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        ClockMemoryManager.unregister(webViewCache);
+        if (clockSurface != null) {
+            clockSurface.release();
+            clockSurface = null;
+        }
         releaseWakeLock();
     }
 }
@@ -0,0 +1,84 @@
+package com.reymelin.gradientclock;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Inactivity timer for nightstand mode
+ * After a period without touch the clock steps down to a dim, low frame rate
+ * presentation; any touch restores it immediately
+ */
+final class NightstandController {
+
+    private static final String TAG = "NightstandController";
+
+    static final long DEFAULT_TIMEOUT_MS = 5 * 60 * 1000L;
+
+    interface Callback {
+        void onNightstandChanged(boolean active);
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final long timeoutMs;
+    private final Callback callback;
+    private boolean running;
+    private boolean active;
+    private long enteredAtMs;
+
+    private final Runnable enterRunnable = new Runnable() {
+        @Override
+        public void run() {
+            setActive(true);
+        }
+    };
+
+    NightstandController(long timeoutMs, Callback callback) {
+        this.timeoutMs = timeoutMs;
+        this.callback = callback;
+    }
+
+    void start() {
+        running = true;
+        restartTimer();
+    }
+
+    void stop() {
+        running = false;
+        handler.removeCallbacks(enterRunnable);
+        setActive(false);
+    }
+
+    /**
+     * Touch or key input; leaves nightstand mode and restarts the timer.
+     * True when this input was the one that woke the clock
+     */
+    boolean onUserActivity() {
+        boolean woke = active;
+        setActive(false);
+        restartTimer();
+        return woke;
+    }
+
+    private void restartTimer() {
+        handler.removeCallbacks(enterRunnable);
+        if (running && timeoutMs > 0) {
+            handler.postDelayed(enterRunnable, timeoutMs);
+        }
+    }
+
+    private void setActive(boolean active) {
+        if (this.active == active) {
+            return;
+        }
+        this.active = active;
+        if (active) {
+            enteredAtMs = SystemClock.elapsedRealtime();
+            Log.i(TAG, "Entering nightstand mode");
+        } else {
+            Log.i(TAG, "Leaving nightstand mode after " + (SystemClock.elapsedRealtime() - enteredAtMs) + " ms");
+        }
+        callback.onNightstandChanged(active);
+    }
+}
@@ -0,0 +1,49 @@
+package com.reymelin.gradientclock;
+
+import android.graphics.Canvas;
+import android.os.Build;
+import android.view.SurfaceHolder;
+
+/**
+ * Native ring renderer on either a hardware or a software canvas
+ * The painter is shared with the surface, which keeps its theme, layers and
+ * zones up to date; this only decides where the strokes are rasterized
+ */
+final class PainterRenderer implements ClockRenderer {
+
+    private final ClockFacePainter painter;
+    private final boolean hardware;
+
+    private PainterRenderer(ClockFacePainter painter, boolean hardware) {
+        this.painter = painter;
+        this.hardware = hardware;
+    }
+
+    /** GPU-backed canvas; layer blits are cheap here */
+    static PainterRenderer hardware(ClockFacePainter painter) {
+        return new PainterRenderer(painter, true);
+    }
+
+    /** CPU raster, independent of the GPU and its driver */
+    static PainterRenderer software(ClockFacePainter painter) {
+        return new PainterRenderer(painter, false);
+    }
+
+    @Override
+    public String getName() {
+        return hardware ? HARDWARE : SOFTWARE;
+    }
+
+    @Override
+    public Canvas lockCanvas(SurfaceHolder holder) {
+        // Surfaces have no hardware canvas before O, so there both backends raster on the CPU
+        return hardware && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+            ? holder.lockHardwareCanvas()
+            : holder.lockCanvas();
+    }
+
+    @Override
+    public void draw(Canvas canvas, int width, int height, long nowMs) {
+        painter.draw(canvas, width, height, nowMs);
+    }
+}
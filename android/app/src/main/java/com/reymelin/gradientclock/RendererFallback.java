@@ -0,0 +1,187 @@
+package com.reymelin.gradientclock;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.util.Log;
+import android.view.Display;
+import android.view.SurfaceHolder;
+import android.view.WindowManager;
+
+/**
+ * Ordered renderer backends for one surface with automatic downgrade
+ * Every frame is timed; when too many frames in a sliding window miss the
+ * budget, the surface steps down to the next cheaper backend. Downgrades are
+ * persisted per surface so the next start does not repeat the slow frames, but
+ * only for the same app version and for a day; after that the richer backend
+ * gets another chance, since one slow window may have been a thermal or cold-start blip.
+ */
+final class RendererFallback {
+
+    private static final String TAG = "RendererFallback";
+
+    // Frames per decision, and the share of them allowed over budget
+    private static final int WINDOW_FRAMES = 120;
+    private static final float MAX_MISS_FRACTION = 0.25f;
+
+    private static final long DEFAULT_BUDGET_NANOS = 16_666_667L;
+
+    // How long a recorded downgrade is trusted before the richer backend is retried
+    private static final long RETRY_AFTER_MS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * A surface moved to a cheaper backend; called on the rendering thread after the frame was posted
+     */
+    interface Listener {
+        void onRendererDowngraded(ClockRenderer from, ClockRenderer to);
+    }
+
+    private final ClockSettings settings;
+    private final String surface;
+    private final long budgetNanos;
+    private final ClockRenderer[] backends;
+    private final long version;
+    private Listener listener;
+
+    // Lowest backend index still allowed; only ever grows
+    private int level;
+
+    // Sliding window of the backend currently drawing
+    private final long[] window = new long[WINDOW_FRAMES];
+    private int windowIndex = -1;
+    private int windowCount;
+    private int windowMisses;
+    private long windowTotalNanos;
+    private int windowPosition;
+
+    RendererFallback(Context context, String surface, long budgetNanos, ClockRenderer... backends) {
+        this.settings = ClockSettings.get(context);
+        this.surface = surface;
+        this.budgetNanos = budgetNanos;
+        this.backends = backends;
+        this.version = DeviceProfile.versionCode(context);
+        this.level = recordedLevel(System.currentTimeMillis());
+    }
+
+    /**
+     * One vsync interval of the default display
+     */
+    static long frameBudgetNanos(Context context) {
+        WindowManager windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        Display display = windowManager != null ? windowManager.getDefaultDisplay() : null;
+        float refreshRate = display != null ? display.getRefreshRate() : 0f;
+        return refreshRate >= 1f ? (long) (1_000_000_000L / refreshRate) : DEFAULT_BUDGET_NANOS;
+    }
+
+    void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Whether a backend has not been ruled out by a downgrade
+     */
+    boolean allows(String name) {
+        int index = indexOf(name);
+        return index >= level;
+    }
+
+    /**
+     * Draw and post one frame with the richest allowed backend no richer than
+     * the one named; false when the surface was not ready
+     */
+    boolean render(SurfaceHolder holder, int width, int height, long nowMs, String richest) {
+        int index = Math.max(level, Math.max(0, indexOf(richest)));
+        ClockRenderer renderer = backends[index];
+
+        Canvas canvas = renderer.lockCanvas(holder);
+        if (canvas == null) {
+            return false;
+        }
+        // Timed from after the lock: waiting for a free buffer is vsync back-pressure,
+        // not backend cost, and would make every paced frame look like a full budget
+        long start = System.nanoTime();
+        try {
+            renderer.draw(canvas, width, height, nowMs);
+        } finally {
+            holder.unlockCanvasAndPost(canvas);
+        }
+        record(index, System.nanoTime() - start);
+        return true;
+    }
+
+    private void record(int index, long frameNanos) {
+        if (index != windowIndex) {
+            resetWindow(index);
+        }
+        if (windowCount == WINDOW_FRAMES) {
+            long oldest = window[windowPosition];
+            windowTotalNanos -= oldest;
+            if (oldest > budgetNanos) {
+                windowMisses--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowPosition] = frameNanos;
+        windowPosition = (windowPosition + 1) % WINDOW_FRAMES;
+        windowTotalNanos += frameNanos;
+        if (frameNanos > budgetNanos) {
+            windowMisses++;
+        }
+
+        if (windowCount < WINDOW_FRAMES) {
+            return;
+        }
+        if (windowMisses > WINDOW_FRAMES * MAX_MISS_FRACTION && index + 1 < backends.length) {
+            downgrade(index);
+        }
+    }
+
+    private void downgrade(int index) {
+        ClockRenderer from = backends[index];
+        ClockRenderer to = backends[index + 1];
+        Log.w(TAG, surface + ": " + from.getName() + " missed " + windowMisses + "/" + WINDOW_FRAMES
+            + " frames of " + budgetNanos / 1000 + " us (mean " + windowTotalNanos / WINDOW_FRAMES / 1000
+            + " us), switching to " + to.getName());
+        level = index + 1;
+        settings.setRenderer(surface, to.getName(), version, System.currentTimeMillis());
+        resetWindow(level);
+        if (listener != null) {
+            listener.onRendererDowngraded(from, to);
+        }
+    }
+
+    private void resetWindow(int index) {
+        windowIndex = index;
+        windowCount = 0;
+        windowMisses = 0;
+        windowTotalNanos = 0;
+        windowPosition = 0;
+    }
+
+    /**
+     * Level of a downgrade recorded under this app version within the retry period;
+     * anything else is cleared so the richest backend is tried again
+     */
+    private int recordedLevel(long nowMs) {
+        int index = indexOf(settings.getRenderer(surface));
+        if (index <= 0) {
+            return 0;
+        }
+        long ageMs = nowMs - settings.getRendererTimeMs(surface);
+        if (settings.getRendererVersion(surface) != version || ageMs < 0 || ageMs >= RETRY_AFTER_MS) {
+            Log.i(TAG, surface + ": retrying " + backends[0].getName() + " after downgrade to " + backends[index].getName());
+            settings.setRenderer(surface, null, version, nowMs);
+            return 0;
+        }
+        return index;
+    }
+
+    private int indexOf(String name) {
+        for (int i = 0; i < backends.length; i++) {
+            if (backends[i].getName().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,148 @@
+package com.reymelin.gradientclock;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+import android.util.LruCache;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Byte-bounded LRU of rendered ring layers keyed by theme, size and density
+ * Evicted bitmaps go to a small reuse pool and are reconfigured for the next
+ * render instead of being reallocated. Meant to be used from one render thread.
+ */
+final class RingLayerCache implements ClockMemoryManager.TrimmableCache {
+
+    private static final String TAG = "RingLayerCache";
+
+    private final String name;
+    private final long maxPoolBytes;
+    private final List<Bitmap> reusePool = new ArrayList<>();
+    private long poolBytes;
+
+    private final LruCache<String, RingLayers> layers;
+    // Last surface too large for the budget, so it is only reported once
+    private String oversizedKey;
+
+    private final RingLayers.BitmapSource bitmapSource = new RingLayers.BitmapSource() {
+        @Override
+        public Bitmap obtain(int width, int height) {
+            return takeReusable(width, height);
+        }
+    };
+
+    RingLayerCache(String name, int maxBytes) {
+        this.name = name;
+        this.maxPoolBytes = maxBytes / 4;
+        this.layers = new LruCache<String, RingLayers>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, RingLayers value) {
+                return (int) value.getByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, RingLayers oldValue, RingLayers newValue) {
+                recycle(oldValue);
+            }
+        };
+    }
+
+    static String key(ClockTheme theme, int width, int height, float density) {
+        return theme.name + "_" + width + "x" + height + "@" + density;
+    }
+
+    /**
+     * Cached layers for a surface, rendering them on a miss; null when one set would
+     * not fit the budget, in which case the caller draws with live shaders
+     */
+    RingLayers get(ClockTheme theme, int width, int height, float density) {
+        String key = key(theme, width, height, density);
+        RingLayers cached = layers.get(key);
+        if (cached == null) {
+            // LruCache would evict an oversized entry on put and pool bitmaps still being drawn
+            long bytes = RingLayers.byteCount(width, height);
+            if (bytes > layers.maxSize()) {
+                if (!key.equals(oversizedKey)) {
+                    oversizedKey = key;
+                    Log.w(TAG, name + ": " + key + " needs " + bytes + " bytes, over the "
+                        + layers.maxSize() + " byte budget; using live shaders");
+                }
+                return null;
+            }
+            cached = RingLayers.render(theme, width, height, bitmapSource);
+            layers.put(key, cached);
+        }
+        return cached;
+    }
+
+    void invalidate(String key) {
+        layers.remove(key);
+    }
+
+    void clear() {
+        layers.evictAll();
+        synchronized (reusePool) {
+            reusePool.clear();
+            poolBytes = 0;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getResidentBytes() {
+        synchronized (reusePool) {
+            return layers.size() + poolBytes;
+        }
+    }
+
+    @Override
+    public void trim(float keepFraction) {
+        if (keepFraction <= 0f) {
+            clear();
+        } else {
+            layers.trimToSize((int) (layers.maxSize() * keepFraction));
+            synchronized (reusePool) {
+                reusePool.clear();
+                poolBytes = 0;
+            }
+        }
+    }
+
+    private void recycle(RingLayers old) {
+        synchronized (reusePool) {
+            for (Bitmap bitmap : old.getBitmaps()) {
+                if (bitmap == null || !bitmap.isMutable()) {
+                    continue;
+                }
+                long bytes = bitmap.getAllocationByteCount();
+                if (poolBytes + bytes <= maxPoolBytes) {
+                    reusePool.add(bitmap);
+                    poolBytes += bytes;
+                }
+            }
+        }
+    }
+
+    private Bitmap takeReusable(int width, int height) {
+        long needed = (long) width * height * 4;
+        synchronized (reusePool) {
+            Iterator<Bitmap> it = reusePool.iterator();
+            while (it.hasNext()) {
+                Bitmap candidate = it.next();
+                if (candidate.getAllocationByteCount() >= needed) {
+                    it.remove();
+                    poolBytes -= candidate.getAllocationByteCount();
+                    candidate.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+                    candidate.eraseColor(0);
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,76 @@
+package com.reymelin.gradientclock;
+
+import android.app.Activity;
+import android.widget.FrameLayout;
+import android.widget.GridLayout;
+import android.widget.RadioButton;
+import android.widget.RadioGroup;
+
+/**
+ * Theme thumbnails and live preview for a settings screen
+ * Both follow the checked theme and time format buttons; the host picks a
+ * theme when a thumbnail is tapped and forwards its lifecycle
+ */
+final class SettingsPreview {
+
+    private final RadioGroup themeGroup;
+    private final RadioGroup timeFormatGroup;
+    private final ThemePreviewGrid previewGrid;
+    private final ClockSurfaceView livePreview;
+
+    /**
+     * Theme thumbnails render in the background; the live preview animates on its own thread
+     */
+    SettingsPreview(Activity activity, RadioGroup themeGroup, RadioGroup timeFormatGroup,
+                    String theme, String timeFormat, ThemePreviewGrid.Listener listener) {
+        this.themeGroup = themeGroup;
+        this.timeFormatGroup = timeFormatGroup;
+
+        livePreview = ClockSurfaceView.preview(activity);
+        FrameLayout previewContainer = activity.findViewById(R.id.live_preview);
+        previewContainer.addView(livePreview);
+        livePreview.setClockState(theme, timeFormat, ClockFacePainter.TEXTURE_NONE);
+
+        GridLayout grid = activity.findViewById(R.id.theme_preview_grid);
+        previewGrid = new ThemePreviewGrid(activity, grid, listener);
+        previewGrid.setSelected(theme);
+        previewGrid.load();
+
+        RadioGroup.OnCheckedChangeListener previewUpdater = new RadioGroup.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(RadioGroup group, int checkedId) {
+                update();
+            }
+        };
+        themeGroup.setOnCheckedChangeListener(previewUpdater);
+        timeFormatGroup.setOnCheckedChangeListener(previewUpdater);
+    }
+
+    /**
+     * Tag of the checked button, or the fallback when none is checked
+     */
+    static String checkedTag(RadioGroup group, String fallback) {
+        RadioButton button = group.findViewById(group.getCheckedRadioButtonId());
+        return button != null && button.getTag() != null ? button.getTag().toString() : fallback;
+    }
+
+    void onResume() {
+        livePreview.setRunning(true);
+    }
+
+    void onPause() {
+        livePreview.setRunning(false);
+    }
+
+    void release() {
+        previewGrid.release();
+        livePreview.release();
+    }
+
+    private void update() {
+        String theme = checkedTag(themeGroup, ClockTheme.DEFAULT);
+        String timeFormat = checkedTag(timeFormatGroup, ClockFacePainter.FORMAT_NONE);
+        livePreview.setClockState(theme, timeFormat, ClockFacePainter.TEXTURE_NONE);
+        previewGrid.setSelected(theme);
+    }
+}
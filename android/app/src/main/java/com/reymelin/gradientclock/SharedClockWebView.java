@@ -0,0 +1,165 @@
+package com.reymelin.gradientclock;
+
+import android.content.Context;
+import android.view.View;
+import android.webkit.WebSettings;
+import android.webkit.WebView;
+
+/**
+ * Process-level WebView shared by all wallpaper engines
+ * The picker preview and the home screen wallpaper get separate engines;
+ * only the visible one owns the page, hidden engines simply detach.
+ * Must be used from the main thread.
+ */
+final class SharedClockWebView {
+
+    private static WebView webView;
+    private static Object owner;
+    private static int engineCount;
+    private static boolean pageReady;
+
+    /**
+     * The idle page as seen by ClockMemoryManager; registered by the wallpaper service
+     */
+    static final ClockMemoryManager.TrimmableCache TRIMMABLE = new ClockMemoryManager.TrimmableCache() {
+        @Override
+        public String getName() {
+            return "idle_webview";
+        }
+
+        @Override
+        public long getResidentBytes() {
+            return -1;
+        }
+
+        @Override
+        public void trim(float keepFraction) {
+            if (keepFraction <= 0f) {
+                destroyIfIdle();
+            }
+        }
+    };
+
+    private SharedClockWebView() {
+    }
+
+    /**
+     * Create and start loading the page ahead of the first visible frame
+     */
+    static void prewarm(Context context) {
+        if (webView != null) {
+            return;
+        }
+
+        Context appContext = context.getApplicationContext();
+        webView = new WebView(appContext);
+        WebSettings settings = webView.getSettings();
+        settings.setJavaScriptEnabled(true);
+        settings.setDomStorageEnabled(true);
+        settings.setAllowFileAccess(false);
+        settings.setAllowContentAccess(false);
+
+        pageReady = false;
+        webView.setWebViewClient(ClockAssetLoader.createWebViewClient(appContext, new Runnable() {
+            @Override
+            public void run() {
+                pageReady = true;
+            }
+        }));
+        webView.setBackgroundColor(0x00000000); // Transparent
+        webView.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+        webView.loadUrl(ClockAssetLoader.INDEX_URL);
+        // Nobody is looking yet
+        webView.onPause();
+    }
+
+    /**
+     * Register an engine so the page outlives individual engines
+     */
+    static void register() {
+        engineCount++;
+    }
+
+    /**
+     * Unregister an engine; the page is destroyed with the last one
+     */
+    static void unregister(Object engine) {
+        release(engine);
+        engineCount = Math.max(0, engineCount - 1);
+        if (engineCount == 0) {
+            destroy();
+        }
+    }
+
+    /**
+     * Hand the page to the visible engine, sized to its surface
+     */
+    static WebView acquire(Object engine, Context context, int width, int height) {
+        prewarm(context);
+        owner = engine;
+        resize(engine, width, height);
+        webView.onResume();
+        // Timers are process-wide and may have been paused by MainActivity
+        webView.resumeTimers();
+        return webView;
+    }
+
+    /**
+     * Detach an engine; the page pauses if that engine owned it
+     */
+    static void release(Object engine) {
+        if (owner != engine) {
+            return;
+        }
+        owner = null;
+        if (webView != null) {
+            webView.onPause();
+        }
+    }
+
+    static boolean hasOwner() {
+        return webView != null && owner != null;
+    }
+
+    static boolean isOwner(Object engine) {
+        return webView != null && owner == engine;
+    }
+
+    /**
+     * True once the clock page has loaded and can produce real frames
+     */
+    static boolean isPageReady() {
+        return webView != null && pageReady;
+    }
+
+    static void resize(Object engine, int width, int height) {
+        if (!isOwner(engine) || width <= 0 || height <= 0) {
+            return;
+        }
+        if (webView.getWidth() != width || webView.getHeight() != height) {
+            webView.measure(
+                View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY)
+            );
+            webView.layout(0, 0, width, height);
+        }
+    }
+
+    /**
+     * Drop the page when no engine is showing it; the next acquire reloads it
+     */
+    static void destroyIfIdle() {
+        if (owner == null) {
+            destroy();
+        }
+    }
+
+    static void destroy() {
+        owner = null;
+        pageReady = false;
+        if (webView != null) {
+            webView.destroy();
+            webView = null;
+        }
+    }
+}
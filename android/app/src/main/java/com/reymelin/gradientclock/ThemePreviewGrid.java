@@ -0,0 +1,170 @@
+package com.reymelin.gradientclock;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.View;
+import android.widget.GridLayout;
+import android.widget.ImageView;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Thumbnail grid of every theme for the settings screens
+ * Thumbnails are rendered in parallel off the UI thread and cached on disk by
+ * theme, size and density, so reopening a screen only decodes small files
+ */
+final class ThemePreviewGrid {
+
+    private static final String TAG = "ThemePreviewGrid";
+    private static final String DIRECTORY = "theme_previews";
+    private static final int COLUMNS = 3;
+    private static final int THUMBNAIL_DP = 96;
+    // Bump when the painter's output changes so stale thumbnails are not reused
+    private static final int CACHE_VERSION = 1;
+
+    private static final ExecutorService renderExecutor = Executors.newFixedThreadPool(
+        Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1))
+    );
+
+    interface Listener {
+        void onThemeClicked(String theme);
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Context context;
+    private final GridLayout grid;
+    private final ImageView[] thumbnails = new ImageView[ClockTheme.NAMES.length];
+    private final int sizePx;
+    private final float density;
+    private volatile boolean released;
+
+    ThemePreviewGrid(Context context, GridLayout grid, final Listener listener) {
+        this.context = context.getApplicationContext();
+        this.grid = grid;
+        this.density = context.getResources().getDisplayMetrics().density;
+        this.sizePx = Math.round(THUMBNAIL_DP * density);
+
+        grid.setColumnCount(COLUMNS);
+        int margin = Math.round(4 * density);
+        for (int i = 0; i < ClockTheme.NAMES.length; i++) {
+            final String theme = ClockTheme.NAMES[i];
+            ImageView thumbnail = new ImageView(context);
+            thumbnail.setBackgroundColor(ClockFacePainter.BACKGROUND_COLOR);
+            thumbnail.setContentDescription(theme);
+            thumbnail.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    listener.onThemeClicked(theme);
+                }
+            });
+            GridLayout.LayoutParams params = new GridLayout.LayoutParams();
+            params.width = sizePx;
+            params.height = sizePx;
+            params.setMargins(margin, margin, margin, margin);
+            grid.addView(thumbnail, params);
+            thumbnails[i] = thumbnail;
+        }
+    }
+
+    /**
+     * Fill the grid; cached thumbnails are decoded and missing ones rendered, all in parallel
+     */
+    void load() {
+        for (int i = 0; i < ClockTheme.NAMES.length; i++) {
+            final int index = i;
+            final String theme = ClockTheme.NAMES[i];
+            renderExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (released) {
+                        return;
+                    }
+                    final Bitmap thumbnail = obtain(theme);
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (!released && thumbnail != null) {
+                                thumbnails[index].setImageBitmap(thumbnail);
+                            }
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    /**
+     * Highlight the selected theme
+     */
+    void setSelected(String theme) {
+        for (int i = 0; i < thumbnails.length; i++) {
+            thumbnails[i].setAlpha(ClockTheme.NAMES[i].equals(theme) ? 1f : 0.55f);
+        }
+    }
+
+    void release() {
+        released = true;
+        mainHandler.removeCallbacksAndMessages(null);
+        grid.removeAllViews();
+    }
+
+    private Bitmap obtain(String theme) {
+        File file = fileFor(theme);
+        if (file.exists()) {
+            Bitmap cached = BitmapFactory.decodeFile(file.getAbsolutePath());
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Bitmap rendered = render(theme);
+        write(file, rendered);
+        return rendered;
+    }
+
+    /**
+     * One static frame at 10:10:30, with its own painter since painters are not thread safe
+     */
+    private Bitmap render(String theme) {
+        Bitmap bitmap = Bitmap.createBitmap(sizePx, sizePx, Bitmap.Config.ARGB_8888);
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.HOUR_OF_DAY, 10);
+        calendar.set(Calendar.MINUTE, 10);
+        calendar.set(Calendar.SECOND, 30);
+        calendar.set(Calendar.MILLISECOND, 0);
+        new ClockFacePainter(ClockTheme.forName(theme))
+            .draw(new Canvas(bitmap), sizePx, sizePx, calendar.getTimeInMillis());
+        return bitmap;
+    }
+
+    private File fileFor(String theme) {
+        File dir = new File(context.getCacheDir(), DIRECTORY);
+        return new File(dir, theme + "_" + sizePx + "@" + density + "_v" + CACHE_VERSION + ".png");
+    }
+
+    private static void write(File file, Bitmap bitmap) {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            return;
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to cache preview " + file.getName(), e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.reymelin.gradientclock;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.util.Log;
+import java.util.Calendar;
+
+/**
+ * Automatic theme switching by season and time of day
+ * The theme is applied when an exact alarm fires at the next moment the
+ * schedule picks a different theme; nothing polls in between
+ */
+public class ThemeScheduleReceiver extends BroadcastReceiver {
+
+    private static final String TAG = "ThemeScheduleReceiver";
+    static final String ACTION_SWITCH_THEME = "com.reymelin.gradientclock.ACTION_SWITCH_THEME";
+
+    // Outside the seasonal themes the time of day decides
+    private static final int DAY_START_HOUR = 7;
+    private static final int NIGHT_START_HOUR = 19;
+
+    // Candidate boundaries are midnight and the day/night hours; a year of them is plenty
+    private static final int MAX_BOUNDARIES = 3 * 366;
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        // Switch alarm, boot, or a clock/zone change that moves the boundaries. Settings
+        // writes are batched, so keep the process alive until the theme is on disk
+        final PendingResult result = goAsync();
+        update(context);
+        ClockSettings.get(context).flushNow(new Runnable() {
+            @Override
+            public void run() {
+                result.finish();
+            }
+        });
+    }
+
+    /**
+     * Apply the scheduled theme now and arm the alarm for the next switch, or cancel it when disabled
+     */
+    static void update(Context context) {
+        ClockSettings settings = ClockSettings.get(context);
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        PendingIntent alarm = alarmIntent(context);
+        if (!settings.isWallpaperAutoTheme()) {
+            if (alarmManager != null) {
+                alarmManager.cancel(alarm);
+            }
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        String theme = themeAt(now);
+        if (!theme.equals(settings.getWallpaperTheme())) {
+            settings.setWallpaperClock(theme, settings.getWallpaperTimeFormat());
+        }
+
+        long next = nextSwitch(now);
+        if (alarmManager == null || next <= now) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !alarmManager.canScheduleExactAlarms()) {
+            // Without the exact alarm permission the switch may arrive a few minutes late
+            alarmManager.setAndAllowWhileIdle(AlarmManager.RTC, next, alarm);
+        } else {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC, next, alarm);
+        }
+        Log.i(TAG, "Theme " + theme + ", next switch at " + next);
+    }
+
+    /**
+     * Scheduled theme for a wall clock time
+     */
+    static String themeAt(long timeMs) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(timeMs);
+        int month = calendar.get(Calendar.MONTH);
+        int day = calendar.get(Calendar.DAY_OF_MONTH);
+        int hour = calendar.get(Calendar.HOUR_OF_DAY);
+
+        if (month == Calendar.OCTOBER && day >= 15) {
+            return "halloween";
+        }
+        if (month == Calendar.DECEMBER && day <= 26) {
+            return "christmas";
+        }
+        if (month == Calendar.DECEMBER || month == Calendar.JANUARY || month == Calendar.FEBRUARY) {
+            return "winter";
+        }
+        if (month >= Calendar.SEPTEMBER && month <= Calendar.NOVEMBER) {
+            return "fall";
+        }
+        return hour >= DAY_START_HOUR && hour < NIGHT_START_HOUR ? "metallic" : "space";
+    }
+
+    /**
+     * First candidate boundary after now at which the scheduled theme differs, or -1
+     */
+    static long nextSwitch(long nowMs) {
+        String current = themeAt(nowMs);
+        Calendar candidate = Calendar.getInstance();
+        candidate.setTimeInMillis(nowMs);
+        candidate.set(Calendar.MINUTE, 0);
+        candidate.set(Calendar.SECOND, 0);
+        candidate.set(Calendar.MILLISECOND, 0);
+        for (int i = 0; i < MAX_BOUNDARIES; i++) {
+            int hour = candidate.get(Calendar.HOUR_OF_DAY);
+            if (hour < DAY_START_HOUR) {
+                candidate.set(Calendar.HOUR_OF_DAY, DAY_START_HOUR);
+            } else if (hour < NIGHT_START_HOUR) {
+                candidate.set(Calendar.HOUR_OF_DAY, NIGHT_START_HOUR);
+            } else {
+                candidate.add(Calendar.DAY_OF_MONTH, 1);
+                candidate.set(Calendar.HOUR_OF_DAY, 0);
+            }
+            if (!themeAt(candidate.getTimeInMillis()).equals(current)) {
+                return candidate.getTimeInMillis();
+            }
+        }
+        return -1;
+    }
+
+    private static PendingIntent alarmIntent(Context context) {
+        Intent intent = new Intent(context, ThemeScheduleReceiver.class);
+        intent.setAction(ACTION_SWITCH_THEME);
+        return PendingIntent.getBroadcast(
+            context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+        );
+    }
+}
@@ -1,10 +1,11 @@
 package com.reymelin.gradientclock;
 
 import android.app.Activity;
-import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.view.View;
 import android.widget.Button;
+import android.widget.CheckBox;
+import android.widget.EditText;
 import android.widget.RadioButton;
 import android.widget.RadioGroup;
 
@@ -14,9 +15,14 @@ import android.widget.RadioGroup;
  */
 public class WallpaperSettingsActivity extends Activity {
     
-    private SharedPreferences prefs;
+    private ClockSettings settings;
     private RadioGroup themeGroup;
     private RadioGroup timeFormatGroup;
+    private RadioGroup resolutionGroup;
+    private SettingsPreview preview;
+    private CheckBox parallaxCheckBox;
+    private CheckBox autoThemeCheckBox;
+    private EditText zonesInput;
     private Button saveButton;
 
     @Override
@@ -24,7 +30,7 @@ public class WallpaperSettingsActivity extends Activity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.wallpaper_settings);
         
-        prefs = getSharedPreferences("wallpaper_prefs", MODE_PRIVATE);
+        settings = ClockSettings.get(this);
         
         initViews();
         setupListeners();
@@ -33,14 +39,30 @@ public class WallpaperSettingsActivity extends Activity {
     private void initViews() {
         themeGroup = findViewById(R.id.theme_group);
         timeFormatGroup = findViewById(R.id.time_format_group);
+        resolutionGroup = findViewById(R.id.resolution_group);
+        parallaxCheckBox = findViewById(R.id.parallax_checkbox);
+        autoThemeCheckBox = findViewById(R.id.auto_theme_checkbox);
+        zonesInput = findViewById(R.id.zones_input);
         saveButton = findViewById(R.id.save_button);
         
         // Load saved preferences
-        String savedTheme = prefs.getString("theme", "metallic");
-        String savedTimeFormat = prefs.getString("timeFormat", "none");
+        String savedTheme = settings.getWallpaperTheme();
+        String savedTimeFormat = settings.getWallpaperTimeFormat();
         
         selectTheme(savedTheme);
         selectTimeFormat(savedTimeFormat);
+        
+        preview = new SettingsPreview(this, themeGroup, timeFormatGroup, savedTheme, savedTimeFormat,
+            new ThemePreviewGrid.Listener() {
+                @Override
+                public void onThemeClicked(String theme) {
+                    selectTheme(theme);
+                }
+            });
+        parallaxCheckBox.setChecked(settings.isWallpaperParallax());
+        autoThemeCheckBox.setChecked(settings.isWallpaperAutoTheme());
+        zonesInput.setText(ZoneOffsets.join(settings.getWallpaperZones()));
+        selectResolution(settings.getWallpaperResolutionScale());
     }
 
     private void setupListeners() {
@@ -54,23 +76,44 @@ public class WallpaperSettingsActivity extends Activity {
     }
 
     private void saveConfiguration() {
-        SharedPreferences.Editor editor = prefs.edit();
-        
-        // Save theme
-        int selectedThemeId = themeGroup.getCheckedRadioButtonId();
-        RadioButton themeButton = findViewById(selectedThemeId);
-        if (themeButton != null) {
-            editor.putString("theme", themeButton.getTag().toString());
+        // Running wallpaper engines pick these up on their next frame
+        settings.setWallpaperClock(
+            SettingsPreview.checkedTag(themeGroup, ClockTheme.DEFAULT),
+            SettingsPreview.checkedTag(timeFormatGroup, ClockFacePainter.FORMAT_NONE)
+        );
+        // Unknown zone IDs are dropped rather than stored
+        settings.setWallpaperEffects(
+            parallaxCheckBox.isChecked(),
+            ZoneOffsets.parse(zonesInput.getText().toString()),
+            Float.parseFloat(SettingsPreview.checkedTag(resolutionGroup, "1"))
+        );
+        // Overrides the picked theme when on, and arms or cancels the switch alarm
+        settings.setWallpaperAutoTheme(autoThemeCheckBox.isChecked());
+        ThemeScheduleReceiver.update(this);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if (preview != null) {
+            preview.onResume();
         }
-        
-        // Save time format
-        int selectedTimeFormatId = timeFormatGroup.getCheckedRadioButtonId();
-        RadioButton timeFormatButton = findViewById(selectedTimeFormatId);
-        if (timeFormatButton != null) {
-            editor.putString("timeFormat", timeFormatButton.getTag().toString());
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if (preview != null) {
+            preview.onPause();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (preview != null) {
+            preview.release();
         }
-        
-        editor.apply();
     }
 
     private void selectTheme(String theme) {
@@ -86,6 +129,19 @@ public class WallpaperSettingsActivity extends Activity {
         }
     }
 
+    private void selectResolution(float scale) {
+        for (int i = 0; i < resolutionGroup.getChildCount(); i++) {
+            View child = resolutionGroup.getChildAt(i);
+            if (child instanceof RadioButton) {
+                RadioButton rb = (RadioButton) child;
+                if (rb.getTag() != null && Float.parseFloat(rb.getTag().toString()) == scale) {
+                    rb.setChecked(true);
+                    break;
+                }
+            }
+        }
+    }
+
     private void selectTimeFormat(String format) {
         for (int i = 0; i < timeFormatGroup.getChildCount(); i++) {
             View child = timeFormatGroup.getChildAt(i);
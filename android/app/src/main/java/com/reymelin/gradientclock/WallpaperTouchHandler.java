@@ -0,0 +1,135 @@
+package com.reymelin.gradientclock;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.MotionEvent;
+import android.view.ViewConfiguration;
+
+/**
+ * Native gesture handling for the live wallpaper
+ * Only the clock face is interactive: a tap on the center time toggles the
+ * time format and a long-press on the rings cycles themes. Moves only update
+ * the latest pointer position, so home screen scrolling costs no redraw.
+ */
+final class WallpaperTouchHandler {
+
+    interface Callback {
+        void onToggleTimeFormat();
+
+        void onCycleTheme();
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Callback callback;
+    private final int touchSlopSquare;
+    private final long longPressTimeoutMs;
+
+    private float centerX;
+    private float centerY;
+    private float ringRadius;
+    private float timeRadius;
+
+    private boolean tracking;
+    private boolean longPressed;
+    private float downX;
+    private float downY;
+    private long downTimeMs;
+    private int downRegion;
+
+    private static final int REGION_NONE = 0;
+    private static final int REGION_TIME = 1;
+    private static final int REGION_RINGS = 2;
+
+    private final Runnable longPressRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (tracking && downRegion == REGION_RINGS) {
+                longPressed = true;
+                callback.onCycleTheme();
+            }
+        }
+    };
+
+    WallpaperTouchHandler(Context context, Callback callback) {
+        this.callback = callback;
+        int slop = ViewConfiguration.get(context).getScaledTouchSlop();
+        this.touchSlopSquare = slop * slop;
+        this.longPressTimeoutMs = ViewConfiguration.getLongPressTimeout();
+    }
+
+    /**
+     * Interactive regions for the current surface size
+     */
+    void setSurfaceSize(int width, int height) {
+        centerX = width / 2f;
+        centerY = height / 2f;
+        float clockRadius = ClockFacePainter.clockSize(width, height) / 2f;
+        ringRadius = clockRadius;
+        timeRadius = clockRadius * ClockFacePainter.HOURS_SCALE * 0.6f;
+    }
+
+    void onTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                downX = event.getX();
+                downY = event.getY();
+                downTimeMs = event.getEventTime();
+                downRegion = hitTest(downX, downY);
+                tracking = downRegion != REGION_NONE;
+                longPressed = false;
+                if (tracking) {
+                    handler.postDelayed(longPressRunnable, longPressTimeoutMs);
+                }
+                break;
+
+            case MotionEvent.ACTION_MOVE:
+                // Only the latest position matters; leaving the slop turns the gesture into a scroll
+                if (tracking && exceedsSlop(event.getX(), event.getY())) {
+                    cancel();
+                }
+                break;
+
+            case MotionEvent.ACTION_UP:
+                if (tracking && !longPressed && downRegion == REGION_TIME
+                        && event.getEventTime() - downTimeMs < longPressTimeoutMs
+                        && !exceedsSlop(event.getX(), event.getY())) {
+                    callback.onToggleTimeFormat();
+                }
+                cancel();
+                break;
+
+            case MotionEvent.ACTION_POINTER_DOWN:
+            case MotionEvent.ACTION_CANCEL:
+                cancel();
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    void cancel() {
+        tracking = false;
+        handler.removeCallbacks(longPressRunnable);
+    }
+
+    private boolean exceedsSlop(float x, float y) {
+        float dx = x - downX;
+        float dy = y - downY;
+        return dx * dx + dy * dy > touchSlopSquare;
+    }
+
+    private int hitTest(float x, float y) {
+        float dx = x - centerX;
+        float dy = y - centerY;
+        float distanceSquare = dx * dx + dy * dy;
+        if (distanceSquare <= timeRadius * timeRadius) {
+            return REGION_TIME;
+        }
+        if (distanceSquare <= ringRadius * ringRadius) {
+            return REGION_RINGS;
+        }
+        return REGION_NONE;
+    }
+}
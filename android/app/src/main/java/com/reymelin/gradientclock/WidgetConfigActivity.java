@@ -3,7 +3,6 @@ package com.reymelin.gradientclock;
 import android.app.Activity;
 import android.appwidget.AppWidgetManager;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.view.View;
 import android.widget.Button;
@@ -17,10 +16,11 @@ import android.widget.RadioGroup;
 public class WidgetConfigActivity extends Activity {
     
     private int appWidgetId = AppWidgetManager.INVALID_APPWIDGET_ID;
-    private SharedPreferences prefs;
+    private ClockSettings settings;
     
     private RadioGroup themeGroup;
     private RadioGroup timeFormatGroup;
+    private SettingsPreview preview;
     private Button confirmButton;
 
     @Override
@@ -45,7 +45,7 @@ public class WidgetConfigActivity extends Activity {
             return;
         }
         
-        prefs = getSharedPreferences("widget_prefs", MODE_PRIVATE);
+        settings = ClockSettings.get(this);
         
         initViews();
         setupListeners();
@@ -57,24 +57,31 @@ public class WidgetConfigActivity extends Activity {
         confirmButton = findViewById(R.id.confirm_button);
         
         // Load saved preferences
-        String savedTheme = prefs.getString("theme_" + appWidgetId, "metallic");
-        String savedTimeFormat = prefs.getString("timeFormat_" + appWidgetId, "none");
+        String savedTheme = settings.getWidgetTheme(appWidgetId);
+        String savedTimeFormat = settings.getWidgetTimeFormat(appWidgetId);
         
         // Set default selections based on saved preferences
         selectTheme(savedTheme);
         selectTimeFormat(savedTimeFormat);
+        
+        preview = new SettingsPreview(this, themeGroup, timeFormatGroup, savedTheme, savedTimeFormat,
+            new ThemePreviewGrid.Listener() {
+                @Override
+                public void onThemeClicked(String theme) {
+                    selectTheme(theme);
+                }
+            });
     }
 
     private void setupListeners() {
         confirmButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
+                // A widget being configured gets no onUpdate of its own; the
+                // provider's settings listener renders it once on save
+                GradientClockWidget.install(WidgetConfigActivity.this);
                 saveConfiguration();
                 
-                // Update widget
-                AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(WidgetConfigActivity.this);
-                // Trigger widget update...
-                
                 Intent resultValue = new Intent();
                 resultValue.putExtra(AppWidgetManager.EXTRA_APPWIDGET_ID, appWidgetId);
                 setResult(RESULT_OK, resultValue);
@@ -84,23 +91,35 @@ public class WidgetConfigActivity extends Activity {
     }
 
     private void saveConfiguration() {
-        SharedPreferences.Editor editor = prefs.edit();
-        
-        // Save theme
-        int selectedThemeId = themeGroup.getCheckedRadioButtonId();
-        RadioButton themeButton = findViewById(selectedThemeId);
-        if (themeButton != null) {
-            editor.putString("theme_" + appWidgetId, themeButton.getTag().toString());
+        settings.setWidgetClock(
+            appWidgetId,
+            SettingsPreview.checkedTag(themeGroup, ClockTheme.DEFAULT),
+            SettingsPreview.checkedTag(timeFormatGroup, ClockFacePainter.FORMAT_NONE)
+        );
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if (preview != null) {
+            preview.onResume();
         }
-        
-        // Save time format
-        int selectedTimeFormatId = timeFormatGroup.getCheckedRadioButtonId();
-        RadioButton timeFormatButton = findViewById(selectedTimeFormatId);
-        if (timeFormatButton != null) {
-            editor.putString("timeFormat_" + appWidgetId, timeFormatButton.getTag().toString());
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if (preview != null) {
+            preview.onPause();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (preview != null) {
+            preview.release();
         }
-        
-        editor.apply();
     }
 
     private void selectTheme(String theme) {
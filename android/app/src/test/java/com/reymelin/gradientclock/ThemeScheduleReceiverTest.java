@@ -0,0 +1,99 @@
+package com.reymelin.gradientclock;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Seasonal and day/night schedule, including month, year and DST boundaries
+ */
+public class ThemeScheduleReceiverTest {
+
+    private static final TimeZone NEW_YORK = TimeZone.getTimeZone("America/New_York");
+
+    private TimeZone defaultZone;
+
+    @Before
+    public void setUp() {
+        defaultZone = TimeZone.getDefault();
+        TimeZone.setDefault(NEW_YORK);
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultZone);
+    }
+
+    @Test
+    public void dayAndNightOutsideTheSeasons() {
+        assertEquals("space", ThemeScheduleReceiver.themeAt(at(2024, Calendar.JUNE, 5, 6, 59)));
+        assertEquals("metallic", ThemeScheduleReceiver.themeAt(at(2024, Calendar.JUNE, 5, 7, 0)));
+        assertEquals("metallic", ThemeScheduleReceiver.themeAt(at(2024, Calendar.JUNE, 5, 18, 59)));
+        assertEquals("space", ThemeScheduleReceiver.themeAt(at(2024, Calendar.JUNE, 5, 19, 0)));
+    }
+
+    @Test
+    public void seasonalThemesFollowTheMonth() {
+        assertEquals("fall", ThemeScheduleReceiver.themeAt(at(2024, Calendar.OCTOBER, 14, 12, 0)));
+        assertEquals("halloween", ThemeScheduleReceiver.themeAt(at(2024, Calendar.OCTOBER, 15, 0, 0)));
+        assertEquals("fall", ThemeScheduleReceiver.themeAt(at(2024, Calendar.NOVEMBER, 1, 0, 0)));
+        assertEquals("christmas", ThemeScheduleReceiver.themeAt(at(2024, Calendar.DECEMBER, 26, 23, 59)));
+        assertEquals("winter", ThemeScheduleReceiver.themeAt(at(2024, Calendar.DECEMBER, 27, 0, 0)));
+        assertEquals("winter", ThemeScheduleReceiver.themeAt(at(2024, Calendar.FEBRUARY, 29, 12, 0)));
+        assertEquals("space", ThemeScheduleReceiver.themeAt(at(2024, Calendar.MARCH, 1, 0, 0)));
+    }
+
+    @Test
+    public void nextSwitchWithinADay() {
+        assertEquals(at(2024, Calendar.JUNE, 5, 19, 0),
+            ThemeScheduleReceiver.nextSwitch(at(2024, Calendar.JUNE, 5, 10, 30)));
+        assertEquals(at(2024, Calendar.JUNE, 6, 7, 0),
+            ThemeScheduleReceiver.nextSwitch(at(2024, Calendar.JUNE, 5, 19, 0)));
+    }
+
+    @Test
+    public void nextSwitchAtMonthBoundaries() {
+        assertEquals(at(2024, Calendar.OCTOBER, 15, 0, 0),
+            ThemeScheduleReceiver.nextSwitch(at(2024, Calendar.OCTOBER, 14, 23, 0)));
+        assertEquals(at(2024, Calendar.NOVEMBER, 1, 0, 0),
+            ThemeScheduleReceiver.nextSwitch(at(2024, Calendar.OCTOBER, 20, 8, 0)));
+        assertEquals(at(2024, Calendar.DECEMBER, 27, 0, 0),
+            ThemeScheduleReceiver.nextSwitch(at(2024, Calendar.DECEMBER, 1, 8, 0)));
+    }
+
+    @Test
+    public void nextSwitchAcrossTheYearBoundary() {
+        // Winter runs through February; the next change is night on March 1st
+        assertEquals(at(2025, Calendar.MARCH, 1, 0, 0),
+            ThemeScheduleReceiver.nextSwitch(at(2024, Calendar.DECEMBER, 31, 23, 0)));
+    }
+
+    @Test
+    public void nextSwitchAcrossDaylightSavingChanges() {
+        // Clocks skip 2:00-3:00 on March 10th; the morning switch is still at 7:00 local
+        long springMorning = ThemeScheduleReceiver.nextSwitch(at(2024, Calendar.MARCH, 9, 20, 0));
+        assertEquals(at(2024, Calendar.MARCH, 10, 7, 0), springMorning);
+        assertEquals(7, hourOf(springMorning));
+
+        // Clocks repeat 1:00-2:00 on November 2nd 2025; only the season change matters in fall
+        long winterStart = ThemeScheduleReceiver.nextSwitch(at(2025, Calendar.NOVEMBER, 2, 0, 30));
+        assertEquals(at(2025, Calendar.DECEMBER, 1, 0, 0), winterStart);
+    }
+
+    private static long at(int year, int month, int day, int hour, int minute) {
+        Calendar calendar = Calendar.getInstance(NEW_YORK);
+        calendar.clear();
+        calendar.set(year, month, day, hour, minute);
+        return calendar.getTimeInMillis();
+    }
+
+    private static int hourOf(long timeMs) {
+        Calendar calendar = Calendar.getInstance(NEW_YORK);
+        calendar.setTimeInMillis(timeMs);
+        return calendar.get(Calendar.HOUR_OF_DAY);
+    }
+}
@@ -0,0 +1,399 @@
+package com.reymelin.gradientclock;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.SweepGradient;
+import java.util.Calendar;
+import java.util.Locale;
+
+/**
+ * Native Canvas rendering of the gradient clock
+ * Mirrors the ring layout of index.html: three stacked conic-gradient discs
+ * and an optional digital time in the center
+ */
+final class ClockFacePainter {
+
+    static final int BACKGROUND_COLOR = 0xFF0a0a0a;
+
+    static final String FORMAT_NONE = "none";
+    static final String FORMAT_MILITARY = "military";
+    static final String FORMAT_AMPM = "ampm";
+
+    static final String TEXTURE_NONE = "none";
+    static final String TEXTURE_ROMAN = "roman";
+    static final String TEXTURE_DOTS = "dots";
+    static final String TEXTURE_NUMBERS = "numbers";
+    static final String TEXTURE_CARDINAL = "cardinal";
+
+    private static final String[] ROMAN_NUMERALS = {
+        "XII", "I", "II", "III", "IV", "V", "VI", "VII", "VIII", "IX", "X", "XI"
+    };
+
+    // Ring sizes relative to the clock size, as in index.html
+    static final float SECONDS_SCALE = 1f;
+    static final float MINUTES_SCALE = 0.833f;
+    static final float HOURS_SCALE = 0.583f;
+
+    // Parallax depth of each ring; the background and markers stay put
+    private static final float SECONDS_DEPTH = 0.35f;
+    private static final float MINUTES_DEPTH = 0.65f;
+    private static final float HOURS_DEPTH = 1f;
+
+    private final Paint secondsPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint minutesPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint hoursPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint markerPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint dialLabelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    // Blits of cached ring layers; dithering happens here, after rotation, in screen space
+    private final Paint layerPaint = new Paint(Paint.FILTER_BITMAP_FLAG | Paint.ANTI_ALIAS_FLAG);
+    private final Matrix shaderMatrix = new Matrix();
+
+    private ClockTheme theme;
+    private RingLayers layers;
+    private String timeFormat = FORMAT_NONE;
+    private String texture = TEXTURE_NONE;
+    private ThemeCrossFade crossFade;
+    private ClockTheme shaderTheme;
+    private int shaderWidth;
+    private int shaderHeight;
+    private float parallaxX;
+    private float parallaxY;
+    private ZoneOffsets zones = new ZoneOffsets(new String[0]);
+
+    // Dial captions only change once a minute
+    private String[] dialCaptions = new String[0];
+    private long[] dialCaptionMinutes = new long[0];
+
+    ClockFacePainter(ClockTheme theme) {
+        this.theme = theme;
+        textPaint.setColor(Color.argb(230, 255, 255, 255));
+        textPaint.setTextAlign(Paint.Align.CENTER);
+        markerPaint.setColor(Color.argb(153, 255, 255, 255));
+        markerPaint.setTextAlign(Paint.Align.CENTER);
+        dialLabelPaint.setColor(Color.argb(179, 255, 255, 255));
+        dialLabelPaint.setTextAlign(Paint.Align.CENTER);
+    }
+
+    ClockTheme getTheme() {
+        return theme;
+    }
+
+    void setTheme(ClockTheme theme) {
+        this.theme = theme;
+        crossFade = null;
+    }
+
+    /**
+     * Fade from the fade's source palette to its target, which becomes the theme
+     */
+    void setCrossFade(ThemeCrossFade crossFade) {
+        this.crossFade = crossFade;
+        if (crossFade != null) {
+            theme = crossFade.to;
+        }
+    }
+
+    boolean isCrossFading() {
+        return crossFade != null;
+    }
+
+    /**
+     * Edge smoothing of the live rings and text; off is cheaper on slow devices
+     */
+    void setAntiAlias(boolean antiAlias) {
+        for (Paint paint : new Paint[]{ secondsPaint, minutesPaint, hoursPaint, textPaint, markerPaint, dialLabelPaint }) {
+            paint.setAntiAlias(antiAlias);
+        }
+    }
+
+    /**
+     * Dither the live gradients and layer blits, for 16-bit surfaces
+     */
+    void setDither(boolean dither) {
+        layerPaint.setDither(dither);
+        secondsPaint.setDither(dither);
+        minutesPaint.setDither(dither);
+        hoursPaint.setDither(dither);
+    }
+
+    /**
+     * Draw rings from pre-rasterized layers instead of live shaders; null to go back
+     */
+    void setLayers(RingLayers layers) {
+        this.layers = layers;
+    }
+
+    void setTimeFormat(String timeFormat) {
+        this.timeFormat = timeFormat != null ? timeFormat : FORMAT_NONE;
+    }
+
+    /**
+     * Hour markers drawn over the rings, as the textureSelect options of the web clock
+     */
+    void setTexture(String texture) {
+        this.texture = texture != null ? texture : TEXTURE_NONE;
+    }
+
+    /**
+     * Shift of the front ring in pixels; deeper rings move proportionally less
+     */
+    void setParallax(float dx, float dy) {
+        parallaxX = dx;
+        parallaxY = dy;
+    }
+
+    /**
+     * Local and extra zone offsets; each extra zone is drawn as a small dial
+     */
+    void setZones(ZoneOffsets zones) {
+        this.zones = zones;
+        dialCaptions = new String[zones.extraCount()];
+        dialCaptionMinutes = new long[zones.extraCount()];
+    }
+
+    ZoneOffsets getZones() {
+        return zones;
+    }
+
+    /**
+     * Draw a complete frame for the given wall clock time
+     */
+    void draw(Canvas canvas, int width, int height, long timeMs) {
+        // A fade draws table palettes with live shaders; layers only exist for whole themes
+        ClockTheme palette = theme;
+        if (crossFade != null) {
+            palette = crossFade.themeAt(timeMs);
+            if (crossFade.isFinished(timeMs)) {
+                crossFade = null;
+            }
+        }
+        boolean useLayers = palette == theme && layers != null && layers.theme == theme
+            && layers.width == width && layers.height == height;
+        if (!useLayers && (palette != shaderTheme || width != shaderWidth || height != shaderHeight)) {
+            buildShaders(palette, width, height);
+        }
+        // One time sample; every zone is an addition on top of it
+        zones.update(timeMs);
+        long dayMs = floorMod(zones.localTime(timeMs), ZoneOffsets.DAY_MS);
+        int hourOfDay = (int) (dayMs / 3600000L);
+        int minutes = (int) (dayMs / 60000L % 60);
+        int seconds = (int) (dayMs / 1000L % 60);
+        int milliseconds = (int) (dayMs % 1000);
+        int hours = hourOfDay % 12;
+
+        float secondsAngle = ((seconds + milliseconds / 1000f) / 60f) * 360f;
+        float minutesAngle = ((minutes + seconds / 60f) / 60f) * 360f;
+        float hoursAngle = ((hours + minutes / 60f + seconds / 3600f) / 12f) * 360f;
+
+        float cx = width / 2f;
+        float cy = height / 2f;
+        float radius = clockSize(width, height) / 2f;
+
+        canvas.drawColor(BACKGROUND_COLOR);
+        if (useLayers) {
+            beginDepth(canvas, SECONDS_DEPTH);
+            layers.drawRing(canvas, RingLayers.SECONDS, cx, cy, secondsAngle, layerPaint);
+            endDepth(canvas);
+            beginDepth(canvas, MINUTES_DEPTH);
+            layers.drawRing(canvas, RingLayers.MINUTES, cx, cy, minutesAngle, layerPaint);
+            endDepth(canvas);
+            beginDepth(canvas, HOURS_DEPTH);
+            layers.drawRing(canvas, RingLayers.HOURS, cx, cy, hoursAngle, layerPaint);
+            endDepth(canvas);
+        } else {
+            beginDepth(canvas, SECONDS_DEPTH);
+            drawRing(canvas, secondsPaint, cx, cy, radius * SECONDS_SCALE, secondsAngle);
+            endDepth(canvas);
+            beginDepth(canvas, MINUTES_DEPTH);
+            drawRing(canvas, minutesPaint, cx, cy, radius * MINUTES_SCALE, minutesAngle);
+            endDepth(canvas);
+            beginDepth(canvas, HOURS_DEPTH);
+            drawRing(canvas, hoursPaint, cx, cy, radius * HOURS_SCALE, hoursAngle);
+            endDepth(canvas);
+        }
+
+        drawMarkers(canvas, cx, cy, clockSize(width, height));
+
+        if (zones.extraCount() > 0) {
+            drawZoneDials(canvas, width, height, timeMs, useLayers);
+        }
+
+        String text = formatTime(hourOfDay, minutes, seconds, timeFormat);
+        if (text != null) {
+            textPaint.setTextSize(clockSize(width, height) * 0.08f);
+            float baseline = cy - (textPaint.descent() + textPaint.ascent()) / 2f;
+            // The time sits on the hours ring
+            beginDepth(canvas, HOURS_DEPTH);
+            canvas.drawText(text, cx, baseline, textPaint);
+            endDepth(canvas);
+        }
+    }
+
+    private void beginDepth(Canvas canvas, float depth) {
+        canvas.save();
+        canvas.translate(parallaxX * depth, parallaxY * depth);
+    }
+
+    private void endDepth(Canvas canvas) {
+        canvas.restore();
+    }
+
+    /**
+     * Clock diameter for a surface, matching the --clock-size rule of the web clock
+     */
+    static float clockSize(int width, int height) {
+        return Math.min(width, height) * 0.9f;
+    }
+
+    static String formatTime(Calendar calendar, String timeFormat) {
+        return formatTime(
+            calendar.get(Calendar.HOUR_OF_DAY), calendar.get(Calendar.MINUTE), calendar.get(Calendar.SECOND), timeFormat
+        );
+    }
+
+    static String formatTime(int hourOfDay, int minutes, int seconds, String timeFormat) {
+        if (FORMAT_MILITARY.equals(timeFormat)) {
+            return String.format(Locale.US, "%02d:%02d:%02d", hourOfDay, minutes, seconds);
+        } else if (FORMAT_AMPM.equals(timeFormat)) {
+            int hour12 = hourOfDay % 12 == 0 ? 12 : hourOfDay % 12;
+            String ampm = hourOfDay >= 12 ? "PM" : "AM";
+            return String.format(Locale.US, "%02d:%02d:%02d %s", hour12, minutes, seconds, ampm);
+        }
+        return null;
+    }
+
+    /**
+     * Time without seconds, for surfaces that repaint only once a minute
+     */
+    static String formatMinutes(Calendar calendar, String timeFormat) {
+        int hourOfDay = calendar.get(Calendar.HOUR_OF_DAY);
+        int minutes = calendar.get(Calendar.MINUTE);
+        if (FORMAT_MILITARY.equals(timeFormat)) {
+            return String.format(Locale.US, "%02d:%02d", hourOfDay, minutes);
+        } else if (FORMAT_AMPM.equals(timeFormat)) {
+            int hour12 = hourOfDay % 12 == 0 ? 12 : hourOfDay % 12;
+            String ampm = hourOfDay >= 12 ? "PM" : "AM";
+            return String.format(Locale.US, "%02d:%02d %s", hour12, minutes, ampm);
+        }
+        return null;
+    }
+
+    /**
+     * DateFormat pattern equivalent to formatTime, or null when no time is shown
+     */
+    static String timePattern(String timeFormat) {
+        if (FORMAT_MILITARY.equals(timeFormat)) {
+            return "HH:mm:ss";
+        } else if (FORMAT_AMPM.equals(timeFormat)) {
+            return "hh:mm:ss a";
+        }
+        return null;
+    }
+
+    /**
+     * One dial per extra zone, below the clock in portrait and beside it in landscape.
+     * Dials reuse the minutes and hours ring layers, scaled down.
+     */
+    private void drawZoneDials(Canvas canvas, int width, int height, long timeMs, boolean useLayers) {
+        int count = zones.extraCount();
+        float size = clockSize(width, height);
+        boolean portrait = height >= width;
+        float free = portrait ? (height - size) / 2f : (width - size) / 2f;
+        float span = (portrait ? width : height) / (float) count;
+        float dialRadius = Math.min(free * 0.35f, span * 0.3f);
+        if (dialRadius < size * 0.03f) {
+            return;
+        }
+        float cx = width / 2f;
+        float cy = height / 2f;
+        float radius = size / 2f;
+        float scale = dialRadius / (radius * MINUTES_SCALE);
+        dialLabelPaint.setTextSize(dialRadius * 0.45f);
+
+        for (int i = 0; i < count; i++) {
+            float dialX = portrait ? span * (i + 0.5f) : width - free / 2f;
+            float dialY = portrait ? height - free / 2f - dialRadius * 0.3f : span * (i + 0.5f);
+
+            long zoneDayMs = floorMod(zones.zoneTime(i, timeMs), ZoneOffsets.DAY_MS);
+            float zoneMinutes = zoneDayMs / 60000f % 60f;
+            float zoneHours = zoneDayMs / 3600000f % 12f;
+            float minutesAngle = zoneMinutes / 60f * 360f;
+            float hoursAngle = zoneHours / 12f * 360f;
+
+            // Map the full-size ring geometry onto the dial
+            canvas.save();
+            canvas.translate(dialX, dialY);
+            canvas.scale(scale, scale);
+            canvas.translate(-cx, -cy);
+            if (useLayers) {
+                layers.drawRing(canvas, RingLayers.MINUTES, cx, cy, minutesAngle, layerPaint);
+                layers.drawRing(canvas, RingLayers.HOURS, cx, cy, hoursAngle, layerPaint);
+            } else {
+                drawRing(canvas, minutesPaint, cx, cy, radius * MINUTES_SCALE, minutesAngle);
+                drawRing(canvas, hoursPaint, cx, cy, radius * HOURS_SCALE, hoursAngle);
+            }
+            canvas.restore();
+
+            long minute = zoneDayMs / 60000L;
+            if (dialCaptions[i] == null || dialCaptionMinutes[i] != minute) {
+                dialCaptions[i] = String.format(Locale.US, "%s %02d:%02d",
+                    zones.label(i), minute / 60, minute % 60);
+                dialCaptionMinutes[i] = minute;
+            }
+            canvas.drawText(dialCaptions[i], dialX, dialY + dialRadius + dialLabelPaint.getTextSize() * 1.2f,
+                dialLabelPaint);
+        }
+    }
+
+    private static long floorMod(long value, long divisor) {
+        long mod = value % divisor;
+        return mod < 0 ? mod + divisor : mod;
+    }
+
+    private void drawMarkers(Canvas canvas, float cx, float cy, float size) {
+        if (TEXTURE_NONE.equals(texture)) {
+            return;
+        }
+        boolean cardinal = TEXTURE_CARDINAL.equals(texture);
+        float markerRadius = size * 0.467f;
+        markerPaint.setTextSize(size * 0.04f);
+        float textOffset = -(markerPaint.descent() + markerPaint.ascent()) / 2f;
+        for (int i = 0; i < 12; i++) {
+            if (cardinal && i % 3 != 0) {
+                continue;
+            }
+            double angle = Math.toRadians(i * 30);
+            float x = cx + (float) (markerRadius * Math.sin(angle));
+            float y = cy - (float) (markerRadius * Math.cos(angle));
+            if (TEXTURE_DOTS.equals(texture)) {
+                canvas.drawCircle(x, y, size * 0.0065f, markerPaint);
+            } else {
+                String label = TEXTURE_ROMAN.equals(texture)
+                    ? ROMAN_NUMERALS[i]
+                    : String.valueOf(i == 0 ? 12 : i);
+                canvas.drawText(label, x, y + textOffset, markerPaint);
+            }
+        }
+    }
+
+    private void drawRing(Canvas canvas, Paint paint, float cx, float cy, float radius, float angle) {
+        // CSS conic gradients start at 12 o'clock, SweepGradient at 3 o'clock
+        shaderMatrix.setRotate(angle - 90f, cx, cy);
+        paint.getShader().setLocalMatrix(shaderMatrix);
+        canvas.drawCircle(cx, cy, radius, paint);
+    }
+
+    private void buildShaders(ClockTheme theme, int width, int height) {
+        float cx = width / 2f;
+        float cy = height / 2f;
+        secondsPaint.setShader(new SweepGradient(cx, cy, theme.secondsColors, ClockTheme.STOP_POSITIONS));
+        minutesPaint.setShader(new SweepGradient(cx, cy, theme.minutesColors, ClockTheme.STOP_POSITIONS));
+        hoursPaint.setShader(new SweepGradient(cx, cy, theme.hoursColors, ClockTheme.STOP_POSITIONS));
+        shaderTheme = theme;
+        shaderWidth = width;
+        shaderHeight = height;
+    }
+}
@@ -0,0 +1,181 @@
+package com.reymelin.gradientclock;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Process-wide response to memory pressure
+ * Caches register here and are shrunk or cleared according to onTrimMemory
+ * levels; under TRIM_MEMORY_RUNNING_CRITICAL the process switches to a
+ * low-memory rendering mode for a while
+ */
+final class ClockMemoryManager {
+
+    private static final String TAG = "ClockMemoryManager";
+
+    // How long low-memory mode stays on after the last critical trim
+    private static final long LOW_MEMORY_HOLD_MS = 5 * 60 * 1000L;
+
+    /**
+     * A cache that can give memory back
+     */
+    interface TrimmableCache {
+        String getName();
+
+        /** Bytes held by the cache, or -1 when it cannot be measured from Java */
+        long getResidentBytes();
+
+        /** Keep at most this fraction of the current contents; 0 clears the cache */
+        void trim(float keepFraction);
+    }
+
+    interface Listener {
+        void onLowMemoryModeChanged(boolean lowMemory);
+    }
+
+    private static final CopyOnWriteArrayList<TrimmableCache> caches = new CopyOnWriteArrayList<>();
+    private static final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private static boolean installed;
+    private static volatile boolean lowMemoryMode;
+
+    private static final Runnable exitLowMemoryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            setLowMemoryMode(false);
+        }
+    };
+
+    private ClockMemoryManager() {
+    }
+
+    /**
+     * Hook onTrimMemory for the whole process; safe to call from every entry point
+     */
+    static synchronized void install(Context context) {
+        if (installed) {
+            return;
+        }
+        installed = true;
+
+        context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                ClockMemoryManager.onTrimMemory(level);
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                ClockMemoryManager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+            }
+        });
+    }
+
+    /**
+     * Track a cache; registering one that is already tracked does nothing
+     */
+    static void register(TrimmableCache cache) {
+        caches.addIfAbsent(cache);
+    }
+
+    static void unregister(TrimmableCache cache) {
+        caches.remove(cache);
+    }
+
+    static void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    static void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    static boolean isLowMemoryMode() {
+        return lowMemoryMode;
+    }
+
+    /**
+     * Apply the trim policy for a ComponentCallbacks2 level
+     */
+    static void onTrimMemory(int level) {
+        float keepFraction;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            // Cached process: give back everything that can be rebuilt
+            keepFraction = 0f;
+        } else if (level == ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            keepFraction = 0.5f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            keepFraction = 0f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            keepFraction = 0.5f;
+        } else {
+            return;
+        }
+
+        long before = totalResidentBytes();
+        for (TrimmableCache cache : caches) {
+            cache.trim(keepFraction);
+        }
+
+        if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            setLowMemoryMode(true);
+            mainHandler.removeCallbacks(exitLowMemoryRunnable);
+            mainHandler.postDelayed(exitLowMemoryRunnable, LOW_MEMORY_HOLD_MS);
+        }
+
+        Log.i(TAG, "onTrimMemory(" + level + "): " + before + " -> " + totalResidentBytes()
+            + " bytes " + getResidentBytes());
+    }
+
+    /**
+     * Resident bytes per registered cache, for tuning cache limits
+     */
+    static Map<String, Long> getResidentBytes() {
+        Map<String, Long> report = new LinkedHashMap<>();
+        for (TrimmableCache cache : caches) {
+            Long previous = report.get(cache.getName());
+            long bytes = cache.getResidentBytes();
+            if (previous != null && previous >= 0 && bytes >= 0) {
+                bytes += previous;
+            }
+            report.put(cache.getName(), bytes);
+        }
+        return report;
+    }
+
+    static long totalResidentBytes() {
+        long total = 0;
+        for (TrimmableCache cache : caches) {
+            total += Math.max(0, cache.getResidentBytes());
+        }
+        return total;
+    }
+
+    private static void setLowMemoryMode(final boolean lowMemory) {
+        if (lowMemoryMode == lowMemory) {
+            return;
+        }
+        lowMemoryMode = lowMemory;
+        Log.i(TAG, "Low-memory rendering " + (lowMemory ? "enabled" : "disabled"));
+        for (final Listener listener : listeners) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onLowMemoryModeChanged(lowMemory);
+                }
+            });
+        }
+    }
+}
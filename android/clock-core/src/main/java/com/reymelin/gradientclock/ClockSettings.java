@@ -0,0 +1,303 @@
+package com.reymelin.gradientclock;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Typed, process-wide clock settings
+ * All preference files are read once into memory; setters update memory,
+ * notify running renderers on the main thread and queue the disk write, which
+ * is batched with other changes and committed on a background thread
+ */
+final class ClockSettings {
+
+    static final String SCOPE_WALLPAPER = "wallpaper";
+    static final String SCOPE_WIDGET = "widget";
+    static final String SCOPE_WATCH_FACE = "watch_face";
+
+    // Existing preference files and keys, kept for compatibility
+    private static final String WALLPAPER_PREFS = "wallpaper_prefs";
+    private static final String WIDGET_PREFS = "widget_prefs";
+    private static final String WATCH_FACE_PREFS = "watch_face_prefs";
+    private static final String RENDERER_PREFS = "renderer_prefs";
+
+    private static final String KEY_THEME = "theme";
+    private static final String KEY_TIME_FORMAT = "timeFormat";
+    private static final String KEY_PARALLAX = "parallax";
+    private static final String KEY_ZONES = "zones";
+    private static final String KEY_AUTO_THEME = "autoTheme";
+    private static final String KEY_RESOLUTION_SCALE = "resolutionScale";
+
+    // Smallest wallpaper render scale; below this the gradients visibly soften
+    static final float MIN_RESOLUTION_SCALE = 0.5f;
+
+    // Changes made within this window go to disk in one commit
+    private static final long WRITE_DELAY_MS = 300;
+
+    /**
+     * A setting changed; widgetId is only meaningful for SCOPE_WIDGET
+     */
+    interface Listener {
+        void onSettingsChanged(String scope, int widgetId);
+    }
+
+    private static ClockSettings instance;
+
+    private final Context context;
+    private final Map<String, Map<String, Object>> values = new HashMap<>();
+    private final Map<String, Map<String, Object>> pendingWrites = new HashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ScheduledExecutorService writeExecutor = Executors.newSingleThreadScheduledExecutor();
+    private boolean writeScheduled;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private ClockSettings(Context context) {
+        this.context = context.getApplicationContext();
+        for (String file : new String[]{ WALLPAPER_PREFS, WIDGET_PREFS, WATCH_FACE_PREFS, RENDERER_PREFS }) {
+            SharedPreferences prefs = this.context.getSharedPreferences(file, Context.MODE_PRIVATE);
+            values.put(file, new ConcurrentHashMap<String, Object>(prefs.getAll()));
+        }
+    }
+
+    static synchronized ClockSettings get(Context context) {
+        if (instance == null) {
+            instance = new ClockSettings(context);
+        }
+        return instance;
+    }
+
+    void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // Wallpaper
+
+    String getWallpaperTheme() {
+        return getString(WALLPAPER_PREFS, KEY_THEME, ClockTheme.DEFAULT);
+    }
+
+    String getWallpaperTimeFormat() {
+        return getString(WALLPAPER_PREFS, KEY_TIME_FORMAT, ClockFacePainter.FORMAT_NONE);
+    }
+
+    boolean isWallpaperParallax() {
+        return getBoolean(WALLPAPER_PREFS, KEY_PARALLAX, false);
+    }
+
+    String[] getWallpaperZones() {
+        return ZoneOffsets.parse(getString(WALLPAPER_PREFS, KEY_ZONES, ""));
+    }
+
+    /**
+     * Fraction of the screen resolution the wallpaper renders at, 1 for full
+     */
+    float getWallpaperResolutionScale() {
+        try {
+            float scale = Float.parseFloat(getString(WALLPAPER_PREFS, KEY_RESOLUTION_SCALE, "1"));
+            return scale >= MIN_RESOLUTION_SCALE && scale <= 1f ? scale : 1f;
+        } catch (NumberFormatException e) {
+            return 1f;
+        }
+    }
+
+    boolean isWallpaperAutoTheme() {
+        return getBoolean(WALLPAPER_PREFS, KEY_AUTO_THEME, false);
+    }
+
+    void setWallpaperAutoTheme(boolean autoTheme) {
+        put(WALLPAPER_PREFS, KEY_AUTO_THEME, autoTheme);
+        changed(SCOPE_WALLPAPER, 0);
+    }
+
+    void setWallpaperClock(String theme, String timeFormat) {
+        put(WALLPAPER_PREFS, KEY_THEME, theme);
+        put(WALLPAPER_PREFS, KEY_TIME_FORMAT, timeFormat);
+        changed(SCOPE_WALLPAPER, 0);
+    }
+
+    void setWallpaperEffects(boolean parallax, String[] zones, float resolutionScale) {
+        put(WALLPAPER_PREFS, KEY_PARALLAX, parallax);
+        put(WALLPAPER_PREFS, KEY_ZONES, ZoneOffsets.join(zones));
+        put(WALLPAPER_PREFS, KEY_RESOLUTION_SCALE, Float.toString(resolutionScale));
+        changed(SCOPE_WALLPAPER, 0);
+    }
+
+    // Widgets, keyed per instance
+
+    String getWidgetTheme(int widgetId) {
+        return getString(WIDGET_PREFS, KEY_THEME + "_" + widgetId, ClockTheme.DEFAULT);
+    }
+
+    String getWidgetTimeFormat(int widgetId) {
+        return getString(WIDGET_PREFS, KEY_TIME_FORMAT + "_" + widgetId, ClockFacePainter.FORMAT_NONE);
+    }
+
+    void setWidgetClock(int widgetId, String theme, String timeFormat) {
+        put(WIDGET_PREFS, KEY_THEME + "_" + widgetId, theme);
+        put(WIDGET_PREFS, KEY_TIME_FORMAT + "_" + widgetId, timeFormat);
+        changed(SCOPE_WIDGET, widgetId);
+    }
+
+    void removeWidget(int widgetId) {
+        put(WIDGET_PREFS, KEY_THEME + "_" + widgetId, null);
+        put(WIDGET_PREFS, KEY_TIME_FORMAT + "_" + widgetId, null);
+    }
+
+    // Watch face
+
+    String getWatchFaceTheme() {
+        return getString(WATCH_FACE_PREFS, KEY_THEME, ClockTheme.DEFAULT);
+    }
+
+    String getWatchFaceTimeFormat() {
+        return getString(WATCH_FACE_PREFS, KEY_TIME_FORMAT, ClockFacePainter.FORMAT_MILITARY);
+    }
+
+    void setWatchFaceClock(String theme, String timeFormat) {
+        put(WATCH_FACE_PREFS, KEY_THEME, theme);
+        put(WATCH_FACE_PREFS, KEY_TIME_FORMAT, timeFormat);
+        changed(SCOPE_WATCH_FACE, 0);
+    }
+
+    // Renderer backends, recorded by RendererFallback; not user settings, so no change event
+
+    String getRenderer(String surface) {
+        return getString(RENDERER_PREFS, surface, null);
+    }
+
+    /** App version the surface's downgrade was recorded under, or -1 */
+    long getRendererVersion(String surface) {
+        return getLong(RENDERER_PREFS, surface + "_version", -1);
+    }
+
+    /** Wall clock time of the surface's downgrade, or -1 */
+    long getRendererTimeMs(String surface) {
+        return getLong(RENDERER_PREFS, surface + "_time", -1);
+    }
+
+    /**
+     * Record a downgrade; null clears the record so the richest backend is tried again
+     */
+    void setRenderer(String surface, String renderer, long version, long timeMs) {
+        put(RENDERER_PREFS, surface, renderer);
+        put(RENDERER_PREFS, surface + "_version", renderer != null ? Long.toString(version) : null);
+        put(RENDERER_PREFS, surface + "_time", renderer != null ? Long.toString(timeMs) : null);
+    }
+
+    private String getString(String file, String key, String fallback) {
+        Object value = values.get(file).get(key);
+        return value instanceof String ? (String) value : fallback;
+    }
+
+    private long getLong(String file, String key, long fallback) {
+        try {
+            return Long.parseLong(getString(file, key, Long.toString(fallback)));
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private boolean getBoolean(String file, String key, boolean fallback) {
+        Object value = values.get(file).get(key);
+        return value instanceof Boolean ? (Boolean) value : fallback;
+    }
+
+    /**
+     * Update memory now and queue the write; null removes the key
+     */
+    private void put(String file, String key, Object value) {
+        if (value != null) {
+            values.get(file).put(key, value);
+        } else {
+            values.get(file).remove(key);
+        }
+        synchronized (pendingWrites) {
+            Map<String, Object> pending = pendingWrites.get(file);
+            if (pending == null) {
+                pending = new HashMap<>();
+                pendingWrites.put(file, pending);
+            }
+            pending.put(key, value);
+            if (!writeScheduled) {
+                writeScheduled = true;
+                writeExecutor.schedule(flushRunnable, WRITE_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Write everything queued without waiting out the batch window, then run done on the
+     * write thread; for receivers whose process may be killed as soon as they return
+     */
+    void flushNow(final Runnable done) {
+        writeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush();
+                } finally {
+                    done.run();
+                }
+            }
+        });
+    }
+
+    private void changed(final String scope, final int widgetId) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (Listener listener : listeners) {
+                    listener.onSettingsChanged(scope, widgetId);
+                }
+            }
+        });
+    }
+
+    /**
+     * One editor commit per file for everything queued since the last flush
+     */
+    private void flush() {
+        Map<String, Map<String, Object>> batch;
+        synchronized (pendingWrites) {
+            batch = new HashMap<>(pendingWrites);
+            pendingWrites.clear();
+            writeScheduled = false;
+        }
+        for (Map.Entry<String, Map<String, Object>> file : batch.entrySet()) {
+            SharedPreferences.Editor editor = context.getSharedPreferences(file.getKey(), Context.MODE_PRIVATE).edit();
+            for (Map.Entry<String, Object> entry : file.getValue().entrySet()) {
+                Object value = entry.getValue();
+                if (value == null) {
+                    editor.remove(entry.getKey());
+                } else if (value instanceof Boolean) {
+                    editor.putBoolean(entry.getKey(), (Boolean) value);
+                } else {
+                    editor.putString(entry.getKey(), value.toString());
+                }
+            }
+            // Already on the write thread, so commit instead of queueing another apply
+            editor.commit();
+        }
+    }
+}
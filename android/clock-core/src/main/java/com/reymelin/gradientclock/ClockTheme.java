@@ -0,0 +1,183 @@
+package com.reymelin.gradientclock;
+
+import android.graphics.Color;
+import androidx.core.graphics.ColorUtils;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Native copy of the web clock themes
+ * Each ring palette is compiled once into the conic-gradient stops used by
+ * generateGradient() in index.html
+ */
+final class ClockTheme {
+
+    static final String DEFAULT = "metallic";
+
+    static final String[] NAMES = {
+        "metallic", "winter", "fall", "space", "dark",
+        "christmas", "halloween", "flowerpower", "rgb"
+    };
+
+    /** Stop positions of the conic gradient, as fractions of a turn */
+    static final float[] STOP_POSITIONS = {
+        0f, 5f / 360f, 15f / 360f, 30f / 360f, 60f / 360f, 120f / 360f,
+        240f / 360f, 300f / 360f, 345f / 360f, 355f / 360f, 1f
+    };
+
+    // Saturation offset and lightness index for each stop, as in generateGradient()
+    private static final int[] STOP_SATURATION = { 0, 3, 5, 0, -3, -5, -3, 0, 5, 3, 0 };
+    private static final int[] STOP_LIGHTNESS = { 0, 1, 2, 3, 4, 5, 4, 3, 2, 1, 0 };
+
+    private static final Map<String, ClockTheme> compiled = new HashMap<>();
+
+    final String name;
+    final int[] secondsColors;
+    final int[] minutesColors;
+    final int[] hoursColors;
+
+    // Mean color of each ring, weighted by how much of the turn each stop covers
+    final int secondsAverage;
+    final int minutesAverage;
+    final int hoursAverage;
+
+    private ClockTheme(String name, int[] secondsColors, int[] minutesColors, int[] hoursColors) {
+        this.name = name;
+        this.secondsColors = secondsColors;
+        this.minutesColors = minutesColors;
+        this.hoursColors = hoursColors;
+        this.secondsAverage = average(secondsColors);
+        this.minutesAverage = average(minutesColors);
+        this.hoursAverage = average(hoursColors);
+    }
+
+    /**
+     * Stop-by-stop mix of two themes; fraction 0 is from, 1 is to
+     */
+    static ClockTheme blend(ClockTheme from, ClockTheme to, float fraction) {
+        return new ClockTheme(
+            from.name + ">" + to.name + "@" + Math.round(fraction * 100),
+            blend(from.secondsColors, to.secondsColors, fraction),
+            blend(from.minutesColors, to.minutesColors, fraction),
+            blend(from.hoursColors, to.hoursColors, fraction)
+        );
+    }
+
+    private static int[] blend(int[] from, int[] to, float fraction) {
+        int[] colors = new int[from.length];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = ColorUtils.blendARGB(from[i], to[i], fraction);
+        }
+        return colors;
+    }
+
+    /**
+     * Compiled theme for a name, falling back to the default theme
+     */
+    static synchronized ClockTheme forName(String name) {
+        String key = isKnown(name) ? name : DEFAULT;
+        ClockTheme theme = compiled.get(key);
+        if (theme == null) {
+            theme = create(key);
+            compiled.put(key, theme);
+        }
+        return theme;
+    }
+
+    static boolean isKnown(String name) {
+        for (String known : NAMES) {
+            if (known.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Theme from the web color data of each ring: hue, saturation, then the lightness levels
+     */
+    private static ClockTheme fromColorData(String name, int[] seconds, int[] minutes, int[] hours) {
+        return new ClockTheme(name, compile(seconds), compile(minutes), compile(hours));
+    }
+
+    private static int[] compile(int[] colorData) {
+        int hue = colorData[0];
+        int saturation = colorData[1];
+        int[] colors = new int[STOP_POSITIONS.length];
+        for (int i = 0; i < colors.length; i++) {
+            float s = clampPercent(saturation + STOP_SATURATION[i]);
+            float l = clampPercent(colorData[2 + STOP_LIGHTNESS[i]]);
+            colors[i] = ColorUtils.HSLToColor(new float[]{ hue, s, l });
+        }
+        return colors;
+    }
+
+    private static int average(int[] colors) {
+        float r = 0f;
+        float g = 0f;
+        float b = 0f;
+        for (int i = 1; i < colors.length; i++) {
+            // Each segment blends linearly between its two stops
+            float span = STOP_POSITIONS[i] - STOP_POSITIONS[i - 1];
+            r += span * (Color.red(colors[i - 1]) + Color.red(colors[i])) / 2f;
+            g += span * (Color.green(colors[i - 1]) + Color.green(colors[i])) / 2f;
+            b += span * (Color.blue(colors[i - 1]) + Color.blue(colors[i])) / 2f;
+        }
+        return Color.rgb(Math.round(r), Math.round(g), Math.round(b));
+    }
+
+    private static float clampPercent(int value) {
+        return Math.max(0, Math.min(100, value)) / 100f;
+    }
+
+    private static ClockTheme create(String name) {
+        switch (name) {
+            case "winter":
+                return fromColorData(name,
+                    new int[]{200, 80, 95, 85, 70, 50, 35, 25, 35, 50, 70, 85, 95},
+                    new int[]{180, 60, 90, 80, 65, 45, 30, 20, 30, 45, 65, 80, 90},
+                    new int[]{220, 50, 85, 75, 60, 40, 25, 15, 25, 40, 60, 75, 85});
+            case "fall":
+                return fromColorData(name,
+                    new int[]{25, 80, 70, 60, 45, 30, 20, 12, 20, 30, 45, 60, 70},
+                    new int[]{40, 75, 65, 55, 40, 28, 18, 10, 18, 28, 40, 55, 65},
+                    new int[]{10, 70, 55, 45, 32, 22, 15, 8, 15, 22, 32, 45, 55});
+            case "space":
+                return fromColorData(name,
+                    new int[]{270, 90, 75, 65, 50, 35, 25, 15, 25, 35, 50, 65, 75},
+                    new int[]{240, 80, 70, 60, 45, 30, 20, 12, 20, 30, 45, 60, 70},
+                    new int[]{300, 85, 65, 55, 40, 28, 18, 10, 18, 28, 40, 55, 65});
+            case "dark":
+                return fromColorData(name,
+                    new int[]{0, 0, 35, 30, 25, 20, 15, 10, 15, 20, 25, 30, 35},
+                    new int[]{0, 0, 30, 25, 20, 15, 12, 8, 12, 15, 20, 25, 30},
+                    new int[]{0, 0, 25, 20, 15, 12, 10, 6, 10, 12, 15, 20, 25});
+            case "christmas":
+                return fromColorData(name,
+                    new int[]{0, 85, 70, 60, 45, 30, 20, 12, 20, 30, 45, 60, 70},
+                    new int[]{120, 80, 75, 65, 50, 35, 25, 15, 25, 35, 50, 65, 75},
+                    new int[]{40, 90, 95, 85, 70, 50, 35, 20, 35, 50, 70, 85, 95});
+            case "halloween":
+                return fromColorData(name,
+                    new int[]{30, 100, 65, 55, 40, 28, 18, 10, 18, 28, 40, 55, 65},
+                    new int[]{270, 85, 55, 45, 32, 22, 15, 8, 15, 22, 32, 45, 55},
+                    new int[]{130, 70, 35, 28, 20, 15, 12, 6, 12, 15, 20, 28, 35});
+            case "flowerpower":
+                return fromColorData(name,
+                    new int[]{330, 95, 80, 70, 55, 40, 28, 18, 28, 40, 55, 70, 80},
+                    new int[]{60, 100, 75, 65, 50, 35, 25, 15, 25, 35, 50, 65, 75},
+                    new int[]{280, 90, 70, 60, 45, 32, 22, 12, 22, 32, 45, 60, 70});
+            case "rgb":
+                return fromColorData(name,
+                    new int[]{0, 100, 60, 50, 40, 30, 20, 12, 20, 30, 40, 50, 60},
+                    new int[]{120, 100, 60, 50, 40, 30, 20, 12, 20, 30, 40, 50, 60},
+                    new int[]{240, 100, 60, 50, 40, 30, 20, 12, 20, 30, 40, 50, 60});
+            case "metallic":
+            default:
+                return fromColorData(DEFAULT,
+                    new int[]{210, 15, 85, 75, 55, 35, 25, 18, 25, 35, 55, 75, 85},
+                    new int[]{45, 70, 75, 65, 50, 35, 25, 18, 25, 35, 50, 65, 75},
+                    new int[]{25, 65, 70, 60, 45, 32, 23, 16, 23, 32, 45, 60, 70});
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.reymelin.gradientclock;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Build;
+import android.os.Process;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Frame rate and quality measured for this device
+ * A short off-screen calibration runs after install and after each app update;
+ * surfaces start from the stored result and use the defaults until it exists
+ */
+final class DeviceProfile {
+
+    private static final String TAG = "DeviceProfile";
+    private static final String PREFS = "device_profile";
+    private static final String KEY_VERSION = "versionCode";
+    private static final String KEY_MAX_FPS = "maxFps";
+    private static final String KEY_ANTI_ALIAS = "antiAlias";
+    private static final String KEY_LAYER_CACHE_BYTES = "layerCacheBytes";
+
+    static final int DEFAULT_MAX_FPS = 60;
+    static final int DEFAULT_LAYER_CACHE_BYTES = 16 * 1024 * 1024;
+
+    // Candidate frame rates, best first; the lowest is used even if it does not fit
+    private static final int[] FRAME_RATES = { 60, 30, 15 };
+    private static final int FRAMES_PER_TIER = 240;
+    private static final float FRAME_PERCENTILE = 0.9f;
+    private static final int MIN_LAYER_CACHE_BYTES = 4 * 1024 * 1024;
+    private static final int MAX_LAYER_CACHE_BYTES = 32 * 1024 * 1024;
+
+    private static final ExecutorService calibrationExecutor = Executors.newSingleThreadExecutor();
+    private static boolean calibrating;
+
+    final int maxFps;
+    final boolean antiAlias;
+    final int layerCacheBytes;
+
+    private DeviceProfile(int maxFps, boolean antiAlias, int layerCacheBytes) {
+        this.maxFps = maxFps;
+        this.antiAlias = antiAlias;
+        this.layerCacheBytes = layerCacheBytes;
+    }
+
+    /**
+     * Stored profile, or the defaults before the first calibration has finished
+     */
+    static DeviceProfile get(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        return new DeviceProfile(
+            prefs.getInt(KEY_MAX_FPS, DEFAULT_MAX_FPS),
+            prefs.getBoolean(KEY_ANTI_ALIAS, true),
+            prefs.getInt(KEY_LAYER_CACHE_BYTES, DEFAULT_LAYER_CACHE_BYTES)
+        );
+    }
+
+    /**
+     * Delay between frames for this profile
+     */
+    long frameIntervalMs() {
+        return 1000L / maxFps;
+    }
+
+    /**
+     * Calibrate in the background unless this app version already has a profile
+     */
+    static synchronized void calibrateIfNeeded(Context context) {
+        final Context appContext = context.getApplicationContext();
+        final long version = versionCode(appContext);
+        SharedPreferences prefs = appContext.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        if (calibrating || prefs.getLong(KEY_VERSION, -1) == version) {
+            return;
+        }
+        calibrating = true;
+        calibrationExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                try {
+                    calibrate(appContext, version);
+                } finally {
+                    synchronized (DeviceProfile.class) {
+                        calibrating = false;
+                    }
+                }
+            }
+        });
+    }
+
+    private static void calibrate(Context context, long version) {
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        int size = Math.max(1, Math.min(metrics.widthPixels, metrics.heightPixels));
+        Bitmap target = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(target);
+        ClockFacePainter painter = new ClockFacePainter(ClockTheme.forName(ClockTheme.DEFAULT));
+        painter.setTimeFormat(ClockFacePainter.FORMAT_MILITARY);
+
+        // Live shaders are the expensive path surfaces take with cold layers or low memory
+        long smoothNanos = measure(painter, canvas, size, true);
+        long fastNanos = measure(painter, canvas, size, false);
+        target.recycle();
+
+        int maxFps = FRAME_RATES[FRAME_RATES.length - 1];
+        boolean antiAlias = false;
+        for (int fps : FRAME_RATES) {
+            long budgetNanos = 1_000_000_000L / fps;
+            if (smoothNanos <= budgetNanos) {
+                maxFps = fps;
+                antiAlias = true;
+                break;
+            }
+            if (fastNanos <= budgetNanos) {
+                maxFps = fps;
+                break;
+            }
+        }
+
+        // Room for the current theme plus one more, within an eighth of the heap, but never
+        // less than one theme: a budget below that would make every frame re-rasterize
+        long layerBytes = RingLayers.byteCount(metrics.widthPixels, metrics.heightPixels);
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        long heapBytes = activityManager != null ? activityManager.getMemoryClass() * 1024L * 1024L : 0;
+        long maxBytes = heapBytes > 0 ? Math.min(MAX_LAYER_CACHE_BYTES, heapBytes / 8) : DEFAULT_LAYER_CACHE_BYTES;
+        int layerCacheBytes = (int) Math.max(Math.max(MIN_LAYER_CACHE_BYTES, layerBytes),
+            Math.min(maxBytes, layerBytes * 2));
+
+        context.getSharedPreferences(PREFS, Context.MODE_PRIVATE).edit()
+            .putLong(KEY_VERSION, version)
+            .putInt(KEY_MAX_FPS, maxFps)
+            .putBoolean(KEY_ANTI_ALIAS, antiAlias)
+            .putInt(KEY_LAYER_CACHE_BYTES, layerCacheBytes)
+            .apply();
+        Log.i(TAG, "Calibrated at " + size + " px: " + smoothNanos / 1000 + " us smooth, " + fastNanos / 1000
+            + " us fast -> " + maxFps + " fps, anti-alias " + antiAlias + ", layer cache " + layerCacheBytes);
+    }
+
+    /**
+     * Frame time at the percentile over a run of frames spread across a minute of clock time
+     */
+    private static long measure(ClockFacePainter painter, Canvas canvas, int size, boolean antiAlias) {
+        painter.setAntiAlias(antiAlias);
+        long[] frameNanos = new long[FRAMES_PER_TIER];
+        long timeMs = System.currentTimeMillis();
+        for (int i = 0; i < FRAMES_PER_TIER; i++) {
+            long start = System.nanoTime();
+            painter.draw(canvas, size, size, timeMs + i * 250L);
+            frameNanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(frameNanos);
+        return frameNanos[(int) (FRAMES_PER_TIER * FRAME_PERCENTILE)];
+    }
+
+    /**
+     * Installed app version; profiles and renderer downgrades are only trusted within one
+     */
+    static long versionCode(Context context) {
+        try {
+            PackageInfo info = context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
+            return Build.VERSION.SDK_INT >= Build.VERSION_CODES.P ? info.getLongVersionCode() : info.versionCode;
+        } catch (PackageManager.NameNotFoundException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.reymelin.gradientclock;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.util.Log;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Persisted last-frame snapshots
+ * Each surface stores a downscaled copy of its last frame in the cache dir so
+ * the next cold start can show it immediately while the real renderer warms up
+ */
+final class FrameSnapshotStore {
+
+    private static final String TAG = "FrameSnapshotStore";
+    private static final String DIRECTORY = "frame_snapshots";
+
+    static final String SURFACE_WALLPAPER = "wallpaper";
+    static final String SURFACE_WIDGET = "widget";
+    static final String SURFACE_WATCH_FACE = "watchface";
+
+    // Longest side of a stored snapshot in pixels
+    private static final int MAX_DIMENSION = 384;
+    private static final int JPEG_QUALITY = 90;
+
+    private static final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+    private static final Paint scalePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    private FrameSnapshotStore() {
+    }
+
+    /**
+     * Decode the snapshot for a surface, or null if none was saved yet
+     */
+    static Bitmap load(Context context, String surface, String theme, int width, int height) {
+        File file = fileFor(context, surface, theme, width, height);
+        if (!file.exists()) {
+            return null;
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        return BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+    }
+
+    /**
+     * Draw a snapshot stretched over the whole surface
+     */
+    static void draw(Canvas canvas, Bitmap snapshot, int width, int height) {
+        canvas.drawColor(ClockFacePainter.BACKGROUND_COLOR);
+        canvas.drawBitmap(snapshot, null, new Rect(0, 0, width, height), scalePaint);
+    }
+
+    /**
+     * Bitmap at snapshot resolution for a surface, with a canvas pre-scaled to surface coordinates
+     */
+    static Bitmap createCaptureBitmap(int width, int height) {
+        float scale = captureScale(width, height);
+        return Bitmap.createBitmap(
+            Math.max(1, Math.round(width * scale)),
+            Math.max(1, Math.round(height * scale)),
+            Bitmap.Config.ARGB_8888
+        );
+    }
+
+    static Canvas createCaptureCanvas(Bitmap bitmap, int width, int height) {
+        Canvas canvas = new Canvas(bitmap);
+        float scale = captureScale(width, height);
+        canvas.scale(scale, scale);
+        return canvas;
+    }
+
+    /**
+     * Write a captured frame on a background thread; the bitmap is recycled afterwards
+     */
+    static void saveAsync(Context context, String surface, String theme, int width, int height,
+                          final Bitmap frame) {
+        final File file = fileFor(context, surface, theme, width, height);
+        ioExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(file, frame);
+                frame.recycle();
+            }
+        });
+    }
+
+    private static void write(File file, Bitmap frame) {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            return;
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            frame.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write snapshot " + file.getName(), e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+
+    private static float captureScale(int width, int height) {
+        int longest = Math.max(width, height);
+        return longest > MAX_DIMENSION ? (float) MAX_DIMENSION / longest : 1f;
+    }
+
+    private static File fileFor(Context context, String surface, String theme, int width, int height) {
+        File dir = new File(context.getCacheDir(), DIRECTORY);
+        return new File(dir, surface + "_" + theme + "_" + width + "x" + height + ".jpg");
+    }
+}
@@ -0,0 +1,63 @@
+package com.reymelin.gradientclock;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.PowerManager;
+
+/**
+ * Coarse power budget shared by every rendering surface
+ * FULL renders at full quality, REDUCED lowers frame rate, MINIMAL renders
+ * as little as possible
+ */
+enum PowerTier {
+    FULL("full"),
+    REDUCED("reduced"),
+    MINIMAL("minimal");
+
+    // Battery level at or below which an unplugged device drops to MINIMAL
+    private static final int MINIMAL_BATTERY_PERCENT = 15;
+
+    final String id;
+
+    PowerTier(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Current tier from battery saver and battery level
+     */
+    static PowerTier current(Context context) {
+        Intent battery = context.getApplicationContext().registerReceiver(
+            null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED)
+        );
+        if (battery != null) {
+            int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+            int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+            int plugged = battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0);
+            if (plugged == 0 && level >= 0 && scale > 0 && level * 100 / scale <= MINIMAL_BATTERY_PERCENT) {
+                return MINIMAL;
+            }
+        }
+
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        if (powerManager != null && powerManager.isPowerSaveMode()) {
+            return REDUCED;
+        }
+        return FULL;
+    }
+
+    /**
+     * Broadcasts after which the tier should be re-evaluated
+     */
+    static IntentFilter changeFilter() {
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+        filter.addAction(Intent.ACTION_BATTERY_LOW);
+        filter.addAction(Intent.ACTION_BATTERY_OKAY);
+        filter.addAction(Intent.ACTION_POWER_CONNECTED);
+        filter.addAction(Intent.ACTION_POWER_DISCONNECTED);
+        return filter;
+    }
+}
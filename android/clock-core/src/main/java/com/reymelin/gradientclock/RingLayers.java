@@ -0,0 +1,109 @@
+package com.reymelin.gradientclock;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.SweepGradient;
+
+/**
+ * Pre-rasterized ring discs for one theme and surface size
+ * Each ring is rendered once at angle 0; frames only rotate the bitmaps
+ */
+final class RingLayers {
+
+    static final int SECONDS = 0;
+    static final int MINUTES = 1;
+    static final int HOURS = 2;
+
+    private static final float[] SCALES = {
+        ClockFacePainter.SECONDS_SCALE, ClockFacePainter.MINUTES_SCALE, ClockFacePainter.HOURS_SCALE
+    };
+
+    /**
+     * Source of bitmaps for rendering, so evicted layers can be recycled
+     */
+    interface BitmapSource {
+        Bitmap obtain(int width, int height);
+    }
+
+    final ClockTheme theme;
+    final int width;
+    final int height;
+    private final Bitmap[] layers = new Bitmap[3];
+
+    private RingLayers(ClockTheme theme, int width, int height) {
+        this.theme = theme;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Bytes the layers of a surface will take, known before rendering them
+     */
+    static long byteCount(int width, int height) {
+        float radius = ClockFacePainter.clockSize(width, height) / 2f;
+        long total = 0;
+        for (float scale : SCALES) {
+            long size = Math.max(1, (int) Math.ceil(radius * scale * 2f));
+            total += size * size * 4;
+        }
+        return total;
+    }
+
+    /**
+     * Rasterize the three ring discs for a surface
+     */
+    static RingLayers render(ClockTheme theme, int width, int height, BitmapSource source) {
+        RingLayers result = new RingLayers(theme, width, height);
+        float radius = ClockFacePainter.clockSize(width, height) / 2f;
+        int[][] palettes = { theme.secondsColors, theme.minutesColors, theme.hoursColors };
+
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        Matrix matrix = new Matrix();
+        for (int ring = 0; ring < 3; ring++) {
+            float ringRadius = radius * SCALES[ring];
+            int size = Math.max(1, (int) Math.ceil(ringRadius * 2f));
+            Bitmap bitmap = source != null ? source.obtain(size, size) : null;
+            if (bitmap == null) {
+                bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+            }
+
+            float c = size / 2f;
+            SweepGradient shader = new SweepGradient(c, c, palettes[ring], ClockTheme.STOP_POSITIONS);
+            // CSS conic gradients start at 12 o'clock, SweepGradient at 3 o'clock
+            matrix.setRotate(-90f, c, c);
+            shader.setLocalMatrix(matrix);
+            paint.setShader(shader);
+            new Canvas(bitmap).drawCircle(c, c, ringRadius, paint);
+            result.layers[ring] = bitmap;
+        }
+        return result;
+    }
+
+    /**
+     * Draw one ring rotated to the given angle in degrees; the paint decides filtering and dithering
+     */
+    void drawRing(Canvas canvas, int ring, float cx, float cy, float angle, Paint paint) {
+        Bitmap bitmap = layers[ring];
+        float half = bitmap.getWidth() / 2f;
+        canvas.save();
+        canvas.rotate(angle, cx, cy);
+        canvas.drawBitmap(bitmap, cx - half, cy - half, paint);
+        canvas.restore();
+    }
+
+    Bitmap[] getBitmaps() {
+        return layers;
+    }
+
+    long getByteCount() {
+        long total = 0;
+        for (Bitmap bitmap : layers) {
+            if (bitmap != null) {
+                total += bitmap.getAllocationByteCount();
+            }
+        }
+        return total;
+    }
+}
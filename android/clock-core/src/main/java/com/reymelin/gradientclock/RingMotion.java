@@ -0,0 +1,39 @@
+package com.reymelin.gradientclock;
+
+/**
+ * When the clock face will next look different
+ * Only the seconds ring turns continuously; the minutes and hours rings and the
+ * digital time step once per second. Frames in between that move nothing by a
+ * visible amount are not worth drawing.
+ */
+final class RingMotion {
+
+    // Smallest movement along a ring's edge that is worth a frame
+    static final float MIN_VISIBLE_PX = 1f;
+
+    private static final double SECONDS_RING_RADIANS_PER_MS = 2 * Math.PI / 60000.0;
+    private static final double MINUTES_RING_RADIANS_PER_STEP = 2 * Math.PI / 3600.0;
+
+    private RingMotion() {
+    }
+
+    /**
+     * Milliseconds from now until a frame would differ visibly from one drawn now
+     *
+     * @param secondsRadius outer radius of the seconds ring in pixels
+     * @param minutesRadius outer radius of the minutes ring in pixels
+     * @param showsSeconds  whether a digital time with seconds is drawn
+     */
+    static long nextVisibleChangeMs(float secondsRadius, float minutesRadius, boolean showsSeconds, long nowMs) {
+        // Continuous seconds ring: time for its edge to travel the threshold
+        double smoothMs = secondsRadius > 0f
+            ? MIN_VISIBLE_PX / (secondsRadius * SECONDS_RING_RADIANS_PER_MS)
+            : Double.MAX_VALUE;
+
+        // Stepped elements: the next second if its step shows, else the next minute
+        boolean secondStepVisible = showsSeconds || minutesRadius * MINUTES_RING_RADIANS_PER_STEP >= MIN_VISIBLE_PX;
+        long stepMs = secondStepVisible ? 1000 - nowMs % 1000 : 60000 - nowMs % 60000;
+
+        return Math.max(1, Math.min((long) smoothMs, stepMs));
+    }
+}
@@ -0,0 +1,48 @@
+package com.reymelin.gradientclock;
+
+/**
+ * Precomputed transition between two themes
+ * Every intermediate palette is blended up front, so a frame during the fade
+ * only picks a step from the table
+ */
+final class ThemeCrossFade {
+
+    static final long DEFAULT_DURATION_MS = 3000;
+
+    // Palette steps across the fade; each step change costs one shader rebuild
+    private static final int STEPS = 36;
+
+    final ClockTheme from;
+    final ClockTheme to;
+    private final ClockTheme[] steps = new ClockTheme[STEPS];
+    private final long startMs;
+    private final long durationMs;
+
+    ThemeCrossFade(ClockTheme from, ClockTheme to, long startMs, long durationMs) {
+        this.from = from;
+        this.to = to;
+        this.startMs = startMs;
+        this.durationMs = durationMs;
+        for (int i = 0; i < STEPS; i++) {
+            steps[i] = ClockTheme.blend(from, to, (i + 1) / (float) (STEPS + 1));
+        }
+    }
+
+    boolean isFinished(long timeMs) {
+        return timeMs - startMs >= durationMs;
+    }
+
+    /**
+     * Palette to draw at a time; the target theme once the fade is over
+     */
+    ClockTheme themeAt(long timeMs) {
+        long elapsed = timeMs - startMs;
+        if (elapsed >= durationMs) {
+            return to;
+        }
+        if (elapsed < 0) {
+            return from;
+        }
+        return steps[(int) (elapsed * STEPS / durationMs)];
+    }
+}
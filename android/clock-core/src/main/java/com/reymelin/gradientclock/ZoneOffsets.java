@@ -0,0 +1,135 @@
+package com.reymelin.gradientclock;
+
+import android.icu.util.BasicTimeZone;
+import android.icu.util.TimeZone;
+import android.icu.util.TimeZoneTransition;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cached UTC offsets for the local zone and any extra clock zones
+ * Offsets are resolved once and reused until the next DST transition of any
+ * zone, so a frame turns one time sample into every zone's time with additions
+ */
+final class ZoneOffsets {
+
+    static final long DAY_MS = 24 * 60 * 60 * 1000L;
+
+    // Re-check interval for zones whose rules expose no transitions
+    private static final long FALLBACK_VALIDITY_MS = 60 * 60 * 1000L;
+
+    private final String[] zoneIds;
+    private final String[] labels;
+    private final long[] offsets;
+    private long validFromMs;
+    private long validUntilMs;
+
+    // Set from other threads on ACTION_TIMEZONE_CHANGED / ACTION_TIME_CHANGED
+    private volatile boolean stale = true;
+
+    ZoneOffsets(String[] extraZoneIds) {
+        this.zoneIds = extraZoneIds;
+        this.labels = new String[extraZoneIds.length];
+        this.offsets = new long[extraZoneIds.length + 1];
+        for (int i = 0; i < extraZoneIds.length; i++) {
+            labels[i] = labelFor(extraZoneIds[i]);
+        }
+    }
+
+    /**
+     * Known zone IDs from a comma separated list; unknown IDs are dropped
+     */
+    static String[] parse(String list) {
+        return list != null ? known(list.split(",")) : new String[0];
+    }
+
+    /**
+     * Known zone IDs out of a list of candidates
+     */
+    static String[] known(String[] candidates) {
+        List<String> ids = new ArrayList<>();
+        for (String candidate : candidates) {
+            String id = candidate != null ? candidate.trim() : "";
+            String canonical = id.isEmpty() ? null : TimeZone.getCanonicalID(id);
+            if (canonical != null && !TimeZone.UNKNOWN_ZONE_ID.equals(canonical)) {
+                ids.add(id);
+            }
+        }
+        return ids.toArray(new String[0]);
+    }
+
+    static String join(String[] zoneIds) {
+        StringBuilder builder = new StringBuilder();
+        for (String id : zoneIds) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(id);
+        }
+        return builder.toString();
+    }
+
+    boolean hasZones(String[] extraZoneIds) {
+        return Arrays.equals(zoneIds, extraZoneIds);
+    }
+
+    int extraCount() {
+        return zoneIds.length;
+    }
+
+    String label(int index) {
+        return labels[index];
+    }
+
+    /**
+     * Make the offsets valid for a time; a no-op except after a transition or invalidate()
+     */
+    void update(long nowMs) {
+        if (stale || nowMs >= validUntilMs || nowMs < validFromMs) {
+            refresh(nowMs);
+        }
+    }
+
+    /** Local wall clock time for a UTC time, in ms since the epoch */
+    long localTime(long nowMs) {
+        return nowMs + offsets[0];
+    }
+
+    /** Wall clock time in an extra zone */
+    long zoneTime(int index, long nowMs) {
+        return nowMs + offsets[index + 1];
+    }
+
+    /**
+     * The local zone or its rules changed; offsets are resolved again on the next frame
+     */
+    void invalidate() {
+        stale = true;
+    }
+
+    private void refresh(long nowMs) {
+        stale = false;
+        validFromMs = nowMs;
+        validUntilMs = Long.MAX_VALUE;
+        offsets[0] = resolve(TimeZone.getDefault(), nowMs);
+        for (int i = 0; i < zoneIds.length; i++) {
+            offsets[i + 1] = resolve(TimeZone.getTimeZone(zoneIds[i]), nowMs);
+        }
+    }
+
+    private long resolve(TimeZone zone, long nowMs) {
+        long validity = nowMs + FALLBACK_VALIDITY_MS;
+        if (zone instanceof BasicTimeZone) {
+            TimeZoneTransition next = ((BasicTimeZone) zone).getNextTransition(nowMs, false);
+            validity = next != null ? next.getTime() : Long.MAX_VALUE;
+        }
+        validUntilMs = Math.min(validUntilMs, validity);
+        return zone.getOffset(nowMs);
+    }
+
+    private static String labelFor(String zoneId) {
+        int slash = zoneId.lastIndexOf('/');
+        return zoneId.substring(slash + 1).replace('_', ' ');
+    }
+}
@@ -0,0 +1,39 @@
+package com.reymelin.gradientclock;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Frame spacing for the continuous seconds ring and the stepped elements
+ */
+public class RingMotionTest {
+
+    @Test
+    public void secondsRingWaitsForOnePixelOfTravel() {
+        // A 100 px edge covers 2 * pi * 100 px per minute, one pixel every ~95 ms
+        assertEquals(95, RingMotion.nextVisibleChangeMs(100f, 83f, false, 0));
+    }
+
+    @Test
+    public void largeRingsDrawEveryFrame() {
+        assertEquals(1, RingMotion.nextVisibleChangeMs(20000f, 16660f, false, 0));
+    }
+
+    @Test
+    public void digitalSecondsWaitForTheNextSecond() {
+        assertEquals(1, RingMotion.nextVisibleChangeMs(0f, 0f, true, 999));
+        assertEquals(750, RingMotion.nextVisibleChangeMs(0f, 0f, true, 60250));
+    }
+
+    @Test
+    public void smallMinutesRingOnlyStepsOnTheMinute() {
+        // Under ~573 px a one-second step of the minutes ring moves its edge less than a pixel
+        assertEquals(500, RingMotion.nextVisibleChangeMs(0f, 500f, false, 59500));
+    }
+
+    @Test
+    public void largeMinutesRingStepsEverySecond() {
+        assertEquals(750, RingMotion.nextVisibleChangeMs(0f, 600f, false, 250));
+    }
+}
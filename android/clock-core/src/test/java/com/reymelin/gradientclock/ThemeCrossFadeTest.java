@@ -0,0 +1,55 @@
+package com.reymelin.gradientclock;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Step selection over the precomputed fade table
+ */
+public class ThemeCrossFadeTest {
+
+    private static final long START_MS = 10_000;
+    private static final long DURATION_MS = ThemeCrossFade.DEFAULT_DURATION_MS;
+
+    private final ClockTheme from = ClockTheme.forName("winter");
+    private final ClockTheme to = ClockTheme.forName("fall");
+    private final ThemeCrossFade fade = new ThemeCrossFade(from, to, START_MS, DURATION_MS);
+
+    @Test
+    public void endpointsAreTheOriginalThemes() {
+        assertSame(from, fade.themeAt(START_MS - 1));
+        assertSame(to, fade.themeAt(START_MS + DURATION_MS));
+        assertSame(to, fade.themeAt(START_MS + DURATION_MS * 2));
+    }
+
+    @Test
+    public void finishesAfterTheDuration() {
+        assertFalse(fade.isFinished(START_MS + DURATION_MS - 1));
+        assertTrue(fade.isFinished(START_MS + DURATION_MS));
+    }
+
+    @Test
+    public void stepsAdvanceMonotonicallyBetweenTheThemes() {
+        int previous = 0;
+        for (long t = START_MS; t < START_MS + DURATION_MS; t += 10) {
+            ClockTheme step = fade.themeAt(t);
+            assertNotSame(from, step);
+            assertNotSame(to, step);
+            // Blended themes are named from>to@percent
+            int percent = Integer.parseInt(step.name.substring(step.name.indexOf('@') + 1));
+            assertTrue("step at " + t + " went back to " + percent, percent >= previous);
+            assertTrue(percent > 0 && percent < 100);
+            previous = percent;
+        }
+    }
+
+    @Test
+    public void stepsAreSharedWithinTheirSlot() {
+        // Frames inside one slot reuse the same palette, so shaders are not rebuilt
+        assertSame(fade.themeAt(START_MS), fade.themeAt(START_MS + 1));
+    }
+}
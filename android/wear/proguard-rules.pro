@@ -0,0 +1,12 @@
+# Add project specific ProGuard rules here.
+
+# Keep the watch face service
+-keep class com.reymelin.gradientclock.GradientClockWatchFaceService { *; }
+
+# Keep Wear OS classes
+-keep class androidx.wear.** { *; }
+-keepclassmembers class androidx.wear.** { *; }
+
+# Preserve line numbers for debugging
+-keepattributes SourceFile,LineNumberTable
+-renamesourcefileattribute SourceFile
@@ -0,0 +1,182 @@
+package com.reymelin.gradientclock;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.ComplicationText;
+
+/**
+ * One watch face complication slot rendered into its own bitmap
+ * The bitmap is redrawn only when the slot receives new data, moves, or its
+ * time-dependent text or active window changes; frames just blit it. Under
+ * memory pressure the bitmap is dropped and rebuilt from the kept data on the
+ * next frame
+ */
+final class ComplicationLayer {
+
+    final int id;
+
+    private final Context context;
+    private final RectF bounds = new RectF();
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint titlePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint outlinePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint progressPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint blitPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    private ComplicationData data;
+    private Bitmap bitmap;
+    private boolean trimmed;
+    // When the bitmap was last rendered, to re-evaluate time-dependent text against
+    private long renderedAtMs;
+
+    ComplicationLayer(Context context, int id) {
+        this.context = context.getApplicationContext();
+        this.id = id;
+        textPaint.setColor(Color.WHITE);
+        textPaint.setTextAlign(Paint.Align.CENTER);
+        titlePaint.setColor(Color.argb(179, 255, 255, 255));
+        titlePaint.setTextAlign(Paint.Align.CENTER);
+        outlinePaint.setStyle(Paint.Style.STROKE);
+        outlinePaint.setColor(Color.argb(64, 255, 255, 255));
+        progressPaint.setStyle(Paint.Style.STROKE);
+        progressPaint.setColor(Color.WHITE);
+        progressPaint.setStrokeCap(Paint.Cap.ROUND);
+    }
+
+    /**
+     * Place the slot as a circle of the given diameter; re-renders if it moved
+     */
+    void setBounds(float cx, float cy, float size) {
+        float half = size / 2f;
+        if (bounds.left == cx - half && bounds.top == cy - half && bounds.width() == size) {
+            return;
+        }
+        bounds.set(cx - half, cy - half, cx + half, cy + half);
+        render();
+    }
+
+    void setData(ComplicationData data) {
+        this.data = data;
+        render();
+    }
+
+    /**
+     * Re-render if the text shown at the last render differs at this time, or
+     * the data became active or expired; cheap enough for every minute tick
+     */
+    void refresh(long nowMs) {
+        if (data == null || !hasText(data)) {
+            return;
+        }
+        boolean wasActive = data.isActive(renderedAtMs);
+        if (wasActive != data.isActive(nowMs)
+            || !sameText(data.getShortText(), nowMs) || !sameText(data.getShortTitle(), nowMs)) {
+            render();
+        }
+    }
+
+    boolean contains(float x, float y) {
+        return bitmap != null && bounds.contains(x, y);
+    }
+
+    PendingIntent getTapAction() {
+        return data != null ? data.getTapAction() : null;
+    }
+
+    void setAntiAlias(boolean antiAlias) {
+        blitPaint.setFilterBitmap(antiAlias);
+    }
+
+    /**
+     * Blit the cached rendering; nothing is laid out or measured here
+     */
+    void draw(Canvas canvas) {
+        if (trimmed) {
+            render();
+        }
+        if (bitmap != null) {
+            canvas.drawBitmap(bitmap, bounds.left, bounds.top, blitPaint);
+        }
+    }
+
+    long getResidentBytes() {
+        return bitmap != null ? bitmap.getAllocationByteCount() : 0;
+    }
+
+    /**
+     * Drop the rendering but keep the data it came from
+     */
+    void trim() {
+        if (bitmap != null) {
+            bitmap = null;
+            trimmed = true;
+        }
+    }
+
+    void release() {
+        bitmap = null;
+        data = null;
+        trimmed = false;
+    }
+
+    private void render() {
+        trimmed = false;
+        long now = System.currentTimeMillis();
+        renderedAtMs = now;
+        int size = (int) Math.ceil(bounds.width());
+        if (data == null || size <= 0 || !hasText(data) || !data.isActive(now)) {
+            bitmap = null;
+            return;
+        }
+        if (bitmap == null || bitmap.getWidth() != size) {
+            bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        } else {
+            bitmap.eraseColor(Color.TRANSPARENT);
+        }
+
+        Canvas canvas = new Canvas(bitmap);
+        float c = size / 2f;
+        float stroke = Math.max(1f, size * 0.04f);
+        float radius = c - stroke;
+        outlinePaint.setStrokeWidth(stroke);
+        canvas.drawCircle(c, c, radius, outlinePaint);
+
+        if (data.getType() == ComplicationData.TYPE_RANGED_VALUE && data.getMaxValue() > data.getMinValue()) {
+            float fraction = (data.getValue() - data.getMinValue()) / (data.getMaxValue() - data.getMinValue());
+            progressPaint.setStrokeWidth(stroke);
+            canvas.drawArc(c - radius, c - radius, c + radius, c + radius,
+                -90f, 360f * Math.max(0f, Math.min(1f, fraction)), false, progressPaint);
+        }
+
+        CharSequence text = textOf(data.getShortText(), now);
+        CharSequence title = textOf(data.getShortTitle(), now);
+        textPaint.setTextSize(size * 0.3f);
+        titlePaint.setTextSize(size * 0.17f);
+        if (title != null && title.length() > 0) {
+            canvas.drawText(text.toString(), c, c + textPaint.getTextSize() * 0.2f, textPaint);
+            canvas.drawText(title.toString(), c, c + textPaint.getTextSize() * 0.2f + titlePaint.getTextSize() * 1.2f, titlePaint);
+        } else {
+            canvas.drawText(text.toString(), c, c - (textPaint.descent() + textPaint.ascent()) / 2f, textPaint);
+        }
+    }
+
+    private static boolean hasText(ComplicationData data) {
+        int type = data.getType();
+        return (type == ComplicationData.TYPE_SHORT_TEXT || type == ComplicationData.TYPE_RANGED_VALUE)
+            && data.getShortText() != null;
+    }
+
+    private boolean sameText(ComplicationText text, long nowMs) {
+        return text == null || text.returnsSameText(renderedAtMs, nowMs);
+    }
+
+    private CharSequence textOf(ComplicationText text, long now) {
+        return text != null ? text.getText(context, now) : null;
+    }
+}
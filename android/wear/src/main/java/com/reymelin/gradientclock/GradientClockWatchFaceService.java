@@ -0,0 +1,539 @@
+package com.reymelin.gradientclock;
+
+import android.app.PendingIntent;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.SystemProviders;
+import android.support.wearable.watchface.CanvasWatchFaceService;
+import android.support.wearable.watchface.WatchFaceService;
+import android.support.wearable.watchface.WatchFaceStyle;
+import android.view.SurfaceHolder;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.SweepGradient;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.format.DateFormat;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Gradient Clock Watch Face for Wear OS
+ * Displays the animated gradient clock on smartwatches
+ */
+public class GradientClockWatchFaceService extends CanvasWatchFaceService {
+
+    // Complication slots inside the hours ring
+    private static final int BATTERY_COMPLICATION_ID = 0;
+    private static final int DATE_COMPLICATION_ID = 1;
+    private static final int STEPS_COMPLICATION_ID = 2;
+    private static final int[] COMPLICATION_IDS = {
+        BATTERY_COMPLICATION_ID, DATE_COMPLICATION_ID, STEPS_COMPLICATION_ID
+    };
+
+    @Override
+    public Engine onCreateEngine() {
+        return new Engine();
+    }
+
+    private class Engine extends CanvasWatchFaceService.Engine implements ClockSettings.Listener {
+        
+        private Calendar calendar;
+        private final Handler updateTimeHandler = new Handler(Looper.getMainLooper());
+        private boolean registeredTimeZoneReceiver = false;
+        private boolean ambientMode = false;
+        private boolean lowBitAmbient = false;
+        private boolean burnInProtection = false;
+        
+        private Paint backgroundPaint;
+        private Paint secondsPaint;
+        private Paint minutesPaint;
+        private Paint hoursPaint;
+        private Paint ambientPaint;
+        private Paint textPaint;
+        private final Rect surfaceBounds = new Rect();
+        private final Matrix shaderMatrix = new Matrix();
+
+        // Ring paints for every theme, built once so a theme tap only swaps references;
+        // under memory pressure only the current theme is kept
+        private final RingPaints[] themePaints = new RingPaints[ClockTheme.NAMES.length];
+        private int themeIndex;
+        private String timeFormat = ClockFacePainter.FORMAT_MILITARY;
+        private ClockSettings settings;
+        private boolean settingsDirty;
+        private long interactiveUpdateRateMs;
+        private boolean antiAlias;
+        // 16-bit surface with dithered gradients, under the minimal power tier
+        private boolean lowBandwidth;
+
+        private final ComplicationLayer[] complications = new ComplicationLayer[COMPLICATION_IDS.length];
+        // Minute of the last check for time-dependent complication text
+        private long complicationMinute = -1;
+
+        // Complication bitmaps and the shaders of themes not on screen; both are rebuilt on demand
+        private final ClockMemoryManager.TrimmableCache faceCache = new ClockMemoryManager.TrimmableCache() {
+            @Override
+            public String getName() {
+                return "watch_face";
+            }
+
+            @Override
+            public long getResidentBytes() {
+                // Shaders live in native memory and are not counted
+                long bytes = 0;
+                for (ComplicationLayer complication : complications) {
+                    if (complication != null) {
+                        bytes += complication.getResidentBytes();
+                    }
+                }
+                return bytes;
+            }
+
+            @Override
+            public void trim(float keepFraction) {
+                if (keepFraction >= 1f) {
+                    return;
+                }
+                for (int i = 0; i < themePaints.length; i++) {
+                    if (i != themeIndex) {
+                        themePaints[i] = null;
+                    }
+                }
+                if (keepFraction == 0f) {
+                    for (ComplicationLayer complication : complications) {
+                        if (complication != null) {
+                            complication.trim();
+                        }
+                    }
+                }
+            }
+        };
+
+        private final Runnable updateTimeRunnable = new Runnable() {
+            @Override
+            public void run() {
+                if (isVisible() && !ambientMode) {
+                    invalidate();
+                    long timeMs = System.currentTimeMillis();
+                    updateTimeHandler.postDelayed(this,
+                        Math.max(interactiveUpdateRateMs, nextVisibleChangeMs(timeMs)));
+                }
+            }
+        };
+
+        @Override
+        public void onCreate(SurfaceHolder holder) {
+            super.onCreate(holder);
+
+            setWatchFaceStyle(new WatchFaceStyle.Builder(GradientClockWatchFaceService.this)
+                    .setAcceptsTapEvents(true)
+                    .setHideNotificationIndicator(false)
+                    .setShowSystemUiTime(false)
+                    .build());
+
+            calendar = Calendar.getInstance();
+
+            ClockMemoryManager.install(GradientClockWatchFaceService.this);
+            ClockMemoryManager.register(faceCache);
+            DeviceProfile.calibrateIfNeeded(GradientClockWatchFaceService.this);
+            // Interactive frame rate and ring smoothing measured for this watch
+            DeviceProfile profile = DeviceProfile.get(GradientClockWatchFaceService.this);
+            interactiveUpdateRateMs = profile.frameIntervalMs();
+            antiAlias = profile.antiAlias;
+            initializePaints();
+
+            settings = ClockSettings.get(GradientClockWatchFaceService.this);
+            selectTheme(indexOfTheme(settings.getWatchFaceTheme()));
+            timeFormat = settings.getWatchFaceTimeFormat();
+            settings.addListener(this);
+
+            initializeComplications();
+        }
+
+        private void initializeComplications() {
+            for (int i = 0; i < COMPLICATION_IDS.length; i++) {
+                complications[i] = new ComplicationLayer(GradientClockWatchFaceService.this, COMPLICATION_IDS[i]);
+            }
+            setDefaultSystemComplicationProvider(
+                BATTERY_COMPLICATION_ID, SystemProviders.WATCH_BATTERY, ComplicationData.TYPE_RANGED_VALUE);
+            setDefaultSystemComplicationProvider(
+                DATE_COMPLICATION_ID, SystemProviders.DATE, ComplicationData.TYPE_SHORT_TEXT);
+            setDefaultSystemComplicationProvider(
+                STEPS_COMPLICATION_ID, SystemProviders.STEP_COUNT, ComplicationData.TYPE_SHORT_TEXT);
+            setActiveComplications(COMPLICATION_IDS);
+        }
+
+        /**
+         * Render the slot once per update; frames, interactive or ambient, only blit the result
+         */
+        @Override
+        public void onComplicationDataUpdate(int complicationId, ComplicationData data) {
+            super.onComplicationDataUpdate(complicationId, data);
+            for (ComplicationLayer complication : complications) {
+                if (complication.id == complicationId) {
+                    complication.setData(data);
+                    break;
+                }
+            }
+            // No invalidate: the next interactive frame or ambient minute tick picks it up
+        }
+
+        private void initializePaints() {
+            backgroundPaint = new Paint();
+            backgroundPaint.setColor(Color.parseColor("#0a0a0a"));
+
+            for (int i = 0; i < themePaints.length; i++) {
+                themePaints[i] = createThemePaints(i);
+            }
+
+            ambientPaint = new Paint();
+            ambientPaint.setAntiAlias(true);
+            ambientPaint.setStyle(Paint.Style.STROKE);
+            ambientPaint.setStrokeWidth(4f);
+
+            textPaint = new Paint();
+            textPaint.setAntiAlias(true);
+            textPaint.setColor(Color.WHITE);
+            textPaint.setTextSize(24f);
+            textPaint.setTextAlign(Paint.Align.CENTER);
+        }
+
+        @Override
+        public void onSurfaceCreated(SurfaceHolder holder) {
+            super.onSurfaceCreated(holder);
+            // Show the last frame immediately after a cold start
+            Rect frame = holder.getSurfaceFrame();
+            Bitmap snapshot = FrameSnapshotStore.load(
+                GradientClockWatchFaceService.this,
+                FrameSnapshotStore.SURFACE_WATCH_FACE, ClockTheme.NAMES[themeIndex], frame.width(), frame.height()
+            );
+            if (snapshot != null) {
+                Canvas canvas = holder.lockCanvas();
+                if (canvas != null) {
+                    try {
+                        FrameSnapshotStore.draw(canvas, snapshot, frame.width(), frame.height());
+                    } finally {
+                        holder.unlockCanvasAndPost(canvas);
+                    }
+                }
+                snapshot.recycle();
+            }
+        }
+
+        @Override
+        public void onSurfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+            super.onSurfaceChanged(holder, format, width, height);
+            surfaceBounds.set(0, 0, width, height);
+            layoutComplications();
+        }
+
+        /**
+         * Battery above the time, date and steps below it, all inside the hours ring
+         */
+        private void layoutComplications() {
+            float cx = surfaceBounds.exactCenterX();
+            float cy = surfaceBounds.exactCenterY();
+            float hoursRadius = Math.min(cx, cy) * 0.9f * ClockFacePainter.HOURS_SCALE;
+            float size = hoursRadius * 0.4f;
+            float offset = hoursRadius * 0.5f;
+            complications[BATTERY_COMPLICATION_ID].setBounds(cx, cy - offset, size);
+            complications[DATE_COMPLICATION_ID].setBounds(cx - hoursRadius * 0.3f, cy + offset, size);
+            complications[STEPS_COMPLICATION_ID].setBounds(cx + hoursRadius * 0.3f, cy + offset, size);
+        }
+
+        @Override
+        public void onDestroy() {
+            updateTimeHandler.removeCallbacks(updateTimeRunnable);
+            settings.removeListener(this);
+            ClockMemoryManager.unregister(faceCache);
+            for (ComplicationLayer complication : complications) {
+                complication.release();
+            }
+            super.onDestroy();
+        }
+
+        @Override
+        public void onPropertiesChanged(Bundle properties) {
+            super.onPropertiesChanged(properties);
+            lowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
+            burnInProtection = properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false);
+        }
+
+        @Override
+        public void onTimeTick() {
+            super.onTimeTick();
+            // The only ambient frame: once a minute, with no timer running
+            invalidate();
+        }
+
+        @Override
+        public void onAmbientModeChanged(boolean inAmbientMode) {
+            super.onAmbientModeChanged(inAmbientMode);
+            ambientMode = inAmbientMode;
+            if (inAmbientMode) {
+                saveSnapshot();
+            }
+
+            if (lowBitAmbient) {
+                ambientPaint.setAntiAlias(!inAmbientMode);
+                ambientPaint.setColor(inAmbientMode ? Color.WHITE : themePaints[themeIndex].ambientColor);
+                textPaint.setAntiAlias(!inAmbientMode);
+                for (ComplicationLayer complication : complications) {
+                    complication.setAntiAlias(!inAmbientMode);
+                }
+            }
+
+            invalidate();
+            updateTimer();
+        }
+
+        @Override
+        public void onTapCommand(int tapType, int x, int y, long eventTime) {
+            if (tapType != TAP_TYPE_TAP || ambientMode) {
+                return;
+            }
+            for (ComplicationLayer complication : complications) {
+                if (complication.contains(x, y)) {
+                    PendingIntent tapAction = complication.getTapAction();
+                    if (tapAction != null) {
+                        try {
+                            tapAction.send();
+                        } catch (PendingIntent.CanceledException e) {
+                            // Provider went away; nothing to open
+                        }
+                    }
+                    return;
+                }
+            }
+            float dx = x - surfaceBounds.exactCenterX();
+            float dy = y - surfaceBounds.exactCenterY();
+            float maxRadius = Math.min(surfaceBounds.exactCenterX(), surfaceBounds.exactCenterY()) * 0.9f;
+            float timeRadius = maxRadius * ClockFacePainter.HOURS_SCALE * 0.6f;
+            if (dx * dx + dy * dy <= timeRadius * timeRadius) {
+                timeFormat = ClockFacePainter.FORMAT_AMPM.equals(timeFormat)
+                    ? ClockFacePainter.FORMAT_MILITARY
+                    : ClockFacePainter.FORMAT_AMPM;
+            } else {
+                selectTheme((themeIndex + 1) % themePaints.length);
+            }
+            // In memory right away; the write is batched on a background thread
+            settings.setWatchFaceClock(ClockTheme.NAMES[themeIndex], timeFormat);
+            invalidate();
+        }
+
+        /**
+         * Settings changed elsewhere; the next frame switches to the precompiled paints
+         */
+        @Override
+        public void onSettingsChanged(String scope, int widgetId) {
+            if (ClockSettings.SCOPE_WATCH_FACE.equals(scope)) {
+                settingsDirty = true;
+                invalidate();
+            }
+        }
+
+        private void selectTheme(int index) {
+            themeIndex = index;
+            if (themePaints[index] == null) {
+                themePaints[index] = createThemePaints(index);
+            }
+            RingPaints paints = themePaints[index];
+            secondsPaint = paints.seconds;
+            minutesPaint = paints.minutes;
+            hoursPaint = paints.hours;
+            ambientPaint.setColor(lowBitAmbient && ambientMode ? Color.WHITE : paints.ambientColor);
+        }
+
+        private RingPaints createThemePaints(int index) {
+            RingPaints paints = new RingPaints(ClockTheme.forName(ClockTheme.NAMES[index]), antiAlias);
+            paints.setDither(lowBandwidth);
+            return paints;
+        }
+
+        private int indexOfTheme(String name) {
+            for (int i = 0; i < ClockTheme.NAMES.length; i++) {
+                if (ClockTheme.NAMES[i].equals(name)) {
+                    return i;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public void onVisibilityChanged(boolean visible) {
+            super.onVisibilityChanged(visible);
+
+            if (visible) {
+                calendar.setTimeZone(TimeZone.getDefault());
+                updatePowerTier();
+                invalidate();
+                updateTimer();
+            } else {
+                updateTimeHandler.removeCallbacks(updateTimeRunnable);
+                saveSnapshot();
+            }
+        }
+
+        /**
+         * Checked whenever the face comes back; battery level does not change faster than that matters
+         */
+        private void updatePowerTier() {
+            boolean minimal = PowerTier.current(GradientClockWatchFaceService.this) == PowerTier.MINIMAL;
+            if (minimal == lowBandwidth) {
+                return;
+            }
+            lowBandwidth = minimal;
+            getSurfaceHolder().setFormat(minimal ? PixelFormat.RGB_565 : PixelFormat.RGBX_8888);
+            for (RingPaints paints : themePaints) {
+                if (paints != null) {
+                    paints.setDither(minimal);
+                }
+            }
+        }
+
+        /**
+         * Persist a downscaled interactive frame for the next cold start
+         */
+        private void saveSnapshot() {
+            if (surfaceBounds.isEmpty()) {
+                return;
+            }
+            int width = surfaceBounds.width();
+            int height = surfaceBounds.height();
+            boolean wasAmbient = ambientMode;
+            ambientMode = false;
+            Bitmap frame = FrameSnapshotStore.createCaptureBitmap(width, height);
+            onDraw(FrameSnapshotStore.createCaptureCanvas(frame, width, height), surfaceBounds);
+            ambientMode = wasAmbient;
+            FrameSnapshotStore.saveAsync(
+                GradientClockWatchFaceService.this,
+                FrameSnapshotStore.SURFACE_WATCH_FACE, ClockTheme.NAMES[themeIndex], width, height, frame
+            );
+        }
+
+        @Override
+        public void onDraw(Canvas canvas, Rect bounds) {
+            if (settingsDirty) {
+                settingsDirty = false;
+                selectTheme(indexOfTheme(settings.getWatchFaceTheme()));
+                timeFormat = settings.getWatchFaceTimeFormat();
+            }
+            long now = System.currentTimeMillis();
+            calendar.setTimeInMillis(now);
+
+            // Draw background
+            canvas.drawRect(0, 0, bounds.width(), bounds.height(), backgroundPaint);
+
+            // Calculate center and radius
+            float centerX = bounds.exactCenterX();
+            float centerY = bounds.exactCenterY();
+            float maxRadius = Math.min(centerX, centerY) * 0.9f;
+
+            // Get time components
+            int seconds = calendar.get(Calendar.SECOND);
+            int minutes = calendar.get(Calendar.MINUTE);
+            int hours = calendar.get(Calendar.HOUR);
+            int milliseconds = calendar.get(Calendar.MILLISECOND);
+
+            // Calculate angles (smooth)
+            float secondsAngle = ((seconds + milliseconds / 1000f) / 60f) * 360f - 90f;
+            float minutesAngle = ((minutes + seconds / 60f) / 60f) * 360f - 90f;
+            float hoursAngle = ((hours + minutes / 60f) / 12f) * 360f - 90f;
+
+            // Draw rings
+            if (!ambientMode) {
+                drawRing(canvas, secondsPaint, centerX, centerY, maxRadius, secondsAngle);
+                drawRing(canvas, minutesPaint, centerX, centerY, maxRadius * ClockFacePainter.MINUTES_SCALE, minutesAngle);
+                drawRing(canvas, hoursPaint, centerX, centerY, maxRadius * ClockFacePainter.HOURS_SCALE, hoursAngle);
+            } else {
+                // Simplified display for ambient mode
+                canvas.drawCircle(centerX, centerY, maxRadius * 0.5f, ambientPaint);
+            }
+
+            // Cached complication bitmaps; same blits in both modes. Dates and other
+            // time-dependent text are re-checked once a minute, on the first frame of it
+            long minute = now / 60000L;
+            if (minute != complicationMinute) {
+                complicationMinute = minute;
+                for (ComplicationLayer complication : complications) {
+                    complication.refresh(now);
+                }
+            }
+            for (ComplicationLayer complication : complications) {
+                complication.draw(canvas);
+            }
+
+            // Draw digital time in center; ambient frames come once a minute, so no seconds
+            String timeText = ambientMode
+                ? ClockFacePainter.formatMinutes(calendar, timeFormat)
+                : ClockFacePainter.formatTime(calendar, timeFormat);
+            if (timeText != null) {
+                canvas.drawText(timeText, centerX, centerY + 10, textPaint);
+            }
+        }
+
+        private void drawRing(Canvas canvas, Paint paint, float cx, float cy, float radius, float angle) {
+            // Shaders are built around the origin; only their matrix changes per frame
+            shaderMatrix.setRotate(angle);
+            shaderMatrix.postTranslate(cx, cy);
+            paint.getShader().setLocalMatrix(shaderMatrix);
+            canvas.drawCircle(cx, cy, radius, paint);
+        }
+
+        /**
+         * Wait until the rings or time move by a visible amount; on a small face that is well below 60 fps
+         */
+        private long nextVisibleChangeMs(long timeMs) {
+            float maxRadius = Math.min(surfaceBounds.exactCenterX(), surfaceBounds.exactCenterY()) * 0.9f;
+            return RingMotion.nextVisibleChangeMs(maxRadius, maxRadius * ClockFacePainter.MINUTES_SCALE,
+                !ClockFacePainter.FORMAT_NONE.equals(timeFormat), timeMs);
+        }
+
+        /**
+         * Interactive frames are timed here; ambient ones come from onTimeTick
+         */
+        private void updateTimer() {
+            updateTimeHandler.removeCallbacks(updateTimeRunnable);
+            if (isVisible() && !ambientMode) {
+                updateTimeHandler.post(updateTimeRunnable);
+            }
+        }
+    }
+
+    /**
+     * Stroke paints with the gradient shaders of one theme
+     */
+    private static final class RingPaints {
+        final Paint seconds;
+        final Paint minutes;
+        final Paint hours;
+        final int ambientColor;
+
+        RingPaints(ClockTheme theme, boolean antiAlias) {
+            seconds = createPaint(theme.secondsColors, 8f, antiAlias);
+            minutes = createPaint(theme.minutesColors, 6f, antiAlias);
+            hours = createPaint(theme.hoursColors, 4f, antiAlias);
+            ambientColor = theme.hoursAverage;
+        }
+
+        void setDither(boolean dither) {
+            seconds.setDither(dither);
+            minutes.setDither(dither);
+            hours.setDither(dither);
+        }
+
+        private static Paint createPaint(int[] colors, float strokeWidth, boolean antiAlias) {
+            Paint paint = new Paint();
+            paint.setAntiAlias(antiAlias);
+            paint.setStyle(Paint.Style.STROKE);
+            paint.setStrokeWidth(strokeWidth);
+            paint.setShader(new SweepGradient(0f, 0f, colors, ClockTheme.STOP_POSITIONS));
+            return paint;
+        }
+    }
+}